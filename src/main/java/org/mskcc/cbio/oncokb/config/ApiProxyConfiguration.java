@@ -0,0 +1,118 @@
+package org.mskcc.cbio.oncokb.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.mskcc.cbio.oncokb.config.application.ApiProxyProperties;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http client shared by all requests proxied to oncokb core.
+ * <p>
+ * Connections are pooled and kept alive so the proxy does not pay a new handshake for every request.
+ */
+@Configuration
+public class ApiProxyConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient apiProxyHttpClient(ApplicationProperties applicationProperties) {
+        ApiProxyProperties apiProxyProperties = applicationProperties.getApiProxy();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(apiProxyProperties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(apiProxyProperties.getMaxConnectionsPerRoute());
+
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig(apiProxyProperties))
+            .setKeepAliveStrategy(keepAliveStrategy(apiProxyProperties))
+            .evictExpiredConnections()
+            .evictIdleConnections(apiProxyProperties.getIdleConnectionEviction(), TimeUnit.SECONDS)
+            // The client is shared by all users, cookies from one response should never be sent with another request
+            .disableCookieManagement()
+            .build();
+    }
+
+    /**
+     * Non-blocking client used by the async mode. A small number of io threads serve all the connections, so
+     * waiting on core does not hold any thread. Only created in the async mode, so the other modes run no io threads.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "application.api-proxy", name = "mode", havingValue = "async")
+    public CloseableHttpAsyncClient apiProxyAsyncHttpClient(ApplicationProperties applicationProperties) {
+        ApiProxyProperties apiProxyProperties = applicationProperties.getApiProxy();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(apiProxyProperties.getIoThreads())
+            .setConnectTimeout(apiProxyProperties.getConnectTimeout())
+            .setSoTimeout(apiProxyProperties.getReadTimeout())
+            .build();
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+            .setMaxConnTotal(apiProxyProperties.getMaxConnections())
+            .setMaxConnPerRoute(apiProxyProperties.getMaxConnectionsPerRoute())
+            .setDefaultIOReactorConfig(ioReactorConfig)
+            .setDefaultRequestConfig(requestConfig(apiProxyProperties))
+            .setKeepAliveStrategy(keepAliveStrategy(apiProxyProperties))
+            .disableCookieManagement()
+            .build();
+        client.start();
+        return client;
+    }
+
+    @Bean
+    public RestTemplate apiProxyRestTemplate(CloseableHttpClient apiProxyHttpClient) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(apiProxyHttpClient));
+        restTemplate.getMessageConverters().add(0, new StringHttpMessageConverter(StandardCharsets.UTF_8));
+        return restTemplate;
+    }
+
+    @Bean
+    public RestTemplate apiProxyStreamingRestTemplate(CloseableHttpClient apiProxyHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(apiProxyHttpClient);
+        requestFactory.setBufferRequestBody(false);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        // Statuses from core are passed through to the client as they are
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        return restTemplate;
+    }
+
+    private RequestConfig requestConfig(ApiProxyProperties apiProxyProperties) {
+        return RequestConfig.custom()
+            .setConnectTimeout(apiProxyProperties.getConnectTimeout())
+            .setConnectionRequestTimeout(apiProxyProperties.getConnectionRequestTimeout())
+            .setSocketTimeout(apiProxyProperties.getReadTimeout())
+            .build();
+    }
+
+    // Honor the Keep-Alive header from core, otherwise fall back to the configured duration
+    private ConnectionKeepAliveStrategy keepAliveStrategy(ApiProxyProperties apiProxyProperties) {
+        long defaultKeepAlive = TimeUnit.SECONDS.toMillis(apiProxyProperties.getKeepAlive());
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : defaultKeepAlive;
+        };
+    }
+}
@@ -1,15 +1,23 @@
 package org.mskcc.cbio.oncokb.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
 import org.mskcc.cbio.oncokb.config.application.RedisType;
 import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
 import org.mskcc.cbio.oncokb.config.cache.TokenCacheResolver;
+import org.mskcc.cbio.oncokb.config.cache.TokenUserCodec;
+import org.mskcc.cbio.oncokb.config.cache.TwoTierCacheManagerPostProcessor;
 import org.mskcc.cbio.oncokb.config.cache.UserCacheResolver;
 import org.redisson.api.RedissonClient;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.redisson.Redisson;
+import org.redisson.codec.MarshallingCodec;
 import org.redisson.config.Config;
+import org.redisson.jcache.JCache;
+import org.redisson.jcache.JCacheManager;
+import org.redisson.jcache.bean.JCacheStatisticsMXBean;
 import org.redisson.jcache.configuration.RedissonConfiguration;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.cache.interceptor.CacheResolver;
@@ -17,7 +25,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.cache.configuration.MutableConfiguration;
@@ -29,9 +41,21 @@ import io.github.jhipster.config.JHipsterProperties;
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
+    // The second level cache regions, the update timestamps region is created separately as it must not expire
+    private static final List<String> HIBERNATE_REGIONS = Arrays.asList(
+        org.mskcc.cbio.oncokb.domain.User.class.getName(),
+        org.mskcc.cbio.oncokb.domain.User.class.getName() + ".authorities",
+        org.mskcc.cbio.oncokb.domain.Authority.class.getName(),
+        org.mskcc.cbio.oncokb.domain.UserDetails.class.getName(),
+        org.mskcc.cbio.oncokb.domain.Token.class.getName(),
+        RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME
+    );
+
     @Bean
     public RedissonClient redissonClient(ApplicationProperties applicationProperties) throws Exception {
         Config config = new Config();
+        // The tokens and users are the hottest cached values, they are written without the java serialization overhead
+        config.setCodec(new TokenUserCodec(new MarshallingCodec()));
         if (applicationProperties.getRedis().getType().equals(RedisType.SINGLE.getType())) {
             config.useSingleServer()
                 .setAddress(applicationProperties.getRedis().getAddress())
@@ -61,22 +85,63 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cm) {
-        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cm);
+    public static TwoTierCacheManagerPostProcessor twoTierCacheManagerPostProcessor() {
+        return new TwoTierCacheManagerPostProcessor();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cm, CacheNameResolver cacheNameResolver) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cm);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_PREFIX, cacheNameResolver.getHibernateRegionPrefix());
+        };
     }
 
     @Bean
-    public JCacheManagerCustomizer cacheManagerCustomizer(javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration, CacheNameResolver cacheNameResolver, ApplicationProperties applicationProperties) {
+    public JCacheManagerCustomizer cacheManagerCustomizer(javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration, CacheNameResolver cacheNameResolver, ApplicationProperties applicationProperties, RedissonClient redissonClient) {
         return cm -> {
             createCache(cm, org.mskcc.cbio.oncokb.config.cache.UserCacheResolver.USERS_BY_LOGIN_CACHE, jcacheConfiguration, cacheNameResolver);
             createCache(cm, org.mskcc.cbio.oncokb.config.cache.UserCacheResolver.USERS_BY_EMAIL_CACHE, jcacheConfiguration, cacheNameResolver);
 
             createCache(cm, org.mskcc.cbio.oncokb.config.cache.TokenCacheResolver.TOKEN_BY_UUID_CACHE, jcacheConfiguration, cacheNameResolver);
             createCache(cm, org.mskcc.cbio.oncokb.config.cache.TokenCacheResolver.TOKENS_BY_USER_LOGIN_CACHE, jcacheConfiguration, cacheNameResolver);
+
+            HIBERNATE_REGIONS.forEach(region -> createHibernateRegion(cm, region, jcacheConfiguration, cacheNameResolver));
+            // The cached query results are only checked against the update timestamps, which therefore must not expire first
+            createHibernateRegion(cm, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, updateTimestampsConfiguration(redissonClient), cacheNameResolver);
             // jhipster-needle-redis-add-entry
         };
     }
 
+    /**
+     * Hits and misses of the second level cache regions, counted by the jcache statistics of the regions so the
+     * hibernate statistics do not need to be collected.
+     */
+    @Bean
+    public MeterBinder hibernateRegionMetrics(javax.cache.CacheManager cm, CacheNameResolver cacheNameResolver) {
+        return meterRegistry -> {
+            if (!(cm instanceof JCacheManager)) {
+                return;
+            }
+            for (String region : HIBERNATE_REGIONS) {
+                String regionName = cacheNameResolver.getHibernateRegionName(region);
+                javax.cache.Cache<Object, Object> cache = cm.getCache(regionName);
+                if (cache == null) {
+                    continue;
+                }
+                JCacheStatisticsMXBean statistics = ((JCacheManager) cm).getStatBean(cache.unwrap(JCache.class));
+                FunctionCounter.builder("cache.gets", statistics, JCacheStatisticsMXBean::getCacheHits)
+                    .tags("cache", regionName, "cacheManager", "hibernate", "result", "hit")
+                    .description("The number of times the second level cache region returned a cached value")
+                    .register(meterRegistry);
+                FunctionCounter.builder("cache.gets", statistics, JCacheStatisticsMXBean::getCacheMisses)
+                    .tags("cache", regionName, "cacheManager", "hibernate", "result", "miss")
+                    .description("The number of times the second level cache region did not have the value")
+                    .register(meterRegistry);
+            }
+        };
+    }
+
     @Bean
     public CacheResolver tokenCacheResolver(CacheManager cm, ApplicationProperties applicationProperties, CacheNameResolver cacheNameResolver) {
         return new TokenCacheResolver(cm, applicationProperties, cacheNameResolver);
@@ -95,4 +160,17 @@ public class CacheConfiguration {
         }
     }
 
+    private void createHibernateRegion(javax.cache.CacheManager cm, String region, javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration, CacheNameResolver cacheNameResolver) {
+        String regionName = cacheNameResolver.getHibernateRegionName(region);
+        if (cm.getCache(regionName) == null) {
+            cm.createCache(regionName, jcacheConfiguration);
+        }
+    }
+
+    private javax.cache.configuration.Configuration<Object, Object> updateTimestampsConfiguration(RedissonClient redissonClient) {
+        MutableConfiguration<Object, Object> jcacheConfig = new MutableConfiguration<>();
+        jcacheConfig.setStatisticsEnabled(true);
+        return RedissonConfiguration.fromInstance(redissonClient, jcacheConfig);
+    }
+
 }
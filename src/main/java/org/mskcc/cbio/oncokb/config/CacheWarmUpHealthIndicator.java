@@ -0,0 +1,29 @@
+package org.mskcc.cbio.oncokb.config;
+
+import org.mskcc.cbio.oncokb.service.CacheWarmUpService;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the application out of service until the caches have been warmed up, so the load balancer does not send it
+ * requests before. Only the readiness health group, checked by the readiness probe, answers 503 meanwhile.
+ */
+@Component
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private final CacheWarmUpService cacheWarmUpService;
+
+    public CacheWarmUpHealthIndicator(CacheWarmUpService cacheWarmUpService) {
+        this.cacheWarmUpService = cacheWarmUpService;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (cacheWarmUpService.isDone()) {
+            builder.up();
+        } else {
+            builder.outOfService().withDetail("cacheWarmUp", "in progress");
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.mskcc.cbio.oncokb.security.*;
 import org.mskcc.cbio.oncokb.security.jwt.*;
 
 import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
+import org.mskcc.cbio.oncokb.security.ratelimit.RateLimiter;
 import org.mskcc.cbio.oncokb.security.uuid.TokenProvider;
 import org.mskcc.cbio.oncokb.security.uuid.UUIDConfigurer;
 import org.springframework.context.annotation.Bean;
@@ -33,8 +34,11 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     private final CorsFilter corsFilter;
     private final SecurityProblemSupport problemSupport;
 
-    public SecurityConfiguration(TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport) {
+    private final RateLimiter rateLimiter;
+
+    public SecurityConfiguration(TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport, RateLimiter rateLimiter) {
         this.tokenProvider = tokenProvider;
+        this.rateLimiter = rateLimiter;
         this.corsFilter = corsFilter;
         this.problemSupport = problemSupport;
     }
@@ -129,6 +133,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
             .antMatchers("/api/**").hasAnyAuthority(AuthoritiesConstants.PUBLIC_WEBSITE, AuthoritiesConstants.USER)
 
+            .antMatchers("/management/health/readiness").permitAll()
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
         .and()
             .httpBasic()
@@ -142,6 +147,6 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 //    }
 
     private UUIDConfigurer securityConfigurerAdapter() {
-        return new UUIDConfigurer(tokenProvider);
+        return new UUIDConfigurer(tokenProvider, rateLimiter);
     }
 }
@@ -0,0 +1,77 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Settings of the response cache for GET requests proxied to oncokb core.
+ * The time to live and the data version check interval are in seconds, the max entry size is in bytes.
+ */
+public class ApiProxyCacheProperties {
+    private boolean enabled = false;
+    private List<String> paths = new ArrayList<>(Arrays.asList(
+        "/api/v1/genes", "/api/v1/levels", "/api/v1/info", "/api/v1/utils/allCuratedGenes", "/api/v1/evidences"
+    ));
+    private int maxEntries = 1000;
+    private int maxEntrySize = 5 * 1024 * 1024;
+    private int timeToLive = 86400;
+    private boolean redisEnabled = false;
+    private int dataVersionCheckInterval = 60;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public void setPaths(List<String> paths) {
+        this.paths = paths;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    public void setRedisEnabled(boolean redisEnabled) {
+        this.redisEnabled = redisEnabled;
+    }
+
+    public int getDataVersionCheckInterval() {
+        return dataVersionCheckInterval;
+    }
+
+    public void setDataVersionCheckInterval(int dataVersionCheckInterval) {
+        this.dataVersionCheckInterval = dataVersionCheckInterval;
+    }
+}
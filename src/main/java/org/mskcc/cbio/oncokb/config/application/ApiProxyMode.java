@@ -0,0 +1,13 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * How the api proxy handles request and response bodies.
+ */
+public enum ApiProxyMode {
+    // Read the whole bodies into memory before forwarding them
+    BUFFERED,
+    // Copy the bodies between the client and oncokb core through a fixed-size buffer
+    STREAMING,
+    // Buffer the bodies, but release the servlet thread while waiting on oncokb core
+    ASYNC
+}
@@ -0,0 +1,126 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the shared http client used to proxy requests to oncokb core.
+ * Timeouts are in milliseconds, keep alive and idle eviction are in seconds.
+ * The max in flight requests and io threads only apply to the async mode.
+ */
+public class ApiProxyProperties {
+    private ApiProxyMode mode = ApiProxyMode.BUFFERED;
+    private int bufferSize = 8192;
+    private int maxConnections = 200;
+    private int maxConnectionsPerRoute = 100;
+    private int connectTimeout = 5000;
+    private int connectionRequestTimeout = 5000;
+    private int readTimeout = 60000;
+    private int keepAlive = 30;
+    private int idleConnectionEviction = 30;
+    private int maxInFlightRequests = 2000;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private boolean coalesceRequests = true;
+    private ApiProxyCacheProperties cache = new ApiProxyCacheProperties();
+
+    public ApiProxyMode getMode() {
+        return mode;
+    }
+
+    public void setMode(ApiProxyMode mode) {
+        this.mode = mode;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(int keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getIdleConnectionEviction() {
+        return idleConnectionEviction;
+    }
+
+    public void setIdleConnectionEviction(int idleConnectionEviction) {
+        this.idleConnectionEviction = idleConnectionEviction;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public ApiProxyCacheProperties getCache() {
+        return cache;
+    }
+
+    public void setCache(ApiProxyCacheProperties cache) {
+        this.cache = cache;
+    }
+}
@@ -2,11 +2,14 @@ package org.mskcc.cbio.oncokb.config.application;
 
 import org.apache.commons.lang3.StringUtils;
 import org.mskcc.cbio.oncokb.domain.enumeration.ProjectProfile;
+import org.mskcc.cbio.oncokb.util.PrefixMatcher;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +22,7 @@ import java.util.stream.Collectors;
 public class ApplicationProperties {
     private String name;
     private String apiProxyUrl;
+    private ApiProxyProperties apiProxy = new ApiProxyProperties();
     private SlackProperties slack;
     private ProjectProfile profile;
     private Boolean sitemapEnabled;
@@ -31,6 +35,22 @@ public class ApplicationProperties {
     private EmailAddresses emailAddresses;
     private String tokenUsageCheck;
     private String tokenUsageCheckWhitelist;
+    // Parsed once when the properties are bound since they are checked on every proxied request
+    private PrefixMatcher tokenUsageCheckMatcher = PrefixMatcher.fromCommaSeparated(null);
+    private Set<String> tokenUsageCheckWhitelistLogins = Collections.emptySet();
+    private TokenStatsBufferProperties tokenStatsBuffer = new TokenStatsBufferProperties();
+    private TokenNearCacheProperties tokenNearCache = new TokenNearCacheProperties();
+    private TokenUsageMeterProperties tokenUsageMeter = new TokenUsageMeterProperties();
+
+    private RateLimitProperties rateLimit = new RateLimitProperties();
+
+    private TokenUsageRecorderProperties tokenUsageRecorder = new TokenUsageRecorderProperties();
+
+    private TwoTierCacheProperties twoTierCache = new TwoTierCacheProperties();
+
+    private CacheWarmUpProperties cacheWarmUp = new CacheWarmUpProperties();
+
+    private UsageAnalysisProperties usageAnalysis = new UsageAnalysisProperties();
     private int publicWebsiteApiThreshold;
     private FrontendProperties frontend;
     private AWSProperties aws;
@@ -52,6 +72,14 @@ public class ApplicationProperties {
         this.apiProxyUrl = apiProxyUrl;
     }
 
+    public ApiProxyProperties getApiProxy() {
+        return apiProxy;
+    }
+
+    public void setApiProxy(ApiProxyProperties apiProxy) {
+        this.apiProxy = apiProxy;
+    }
+
     public SlackProperties getSlack() { return slack; }
 
     public void setSlack( SlackProperties slack ) { this.slack = slack; }
@@ -134,6 +162,11 @@ public class ApplicationProperties {
 
     public void setTokenUsageCheck(String tokenUsageCheck) {
         this.tokenUsageCheck = tokenUsageCheck;
+        this.tokenUsageCheckMatcher = PrefixMatcher.fromCommaSeparated(tokenUsageCheck);
+    }
+
+    public PrefixMatcher getTokenUsageCheckMatcher() {
+        return tokenUsageCheckMatcher;
     }
 
     public String getTokenUsageCheckWhitelist() {
@@ -142,6 +175,76 @@ public class ApplicationProperties {
 
     public void setTokenUsageCheckWhitelist(String tokenUsageCheckWhitelist) {
         this.tokenUsageCheckWhitelist = tokenUsageCheckWhitelist;
+        this.tokenUsageCheckWhitelistLogins = tokenUsageCheckWhitelist == null ? Collections.emptySet() :
+            Collections.unmodifiableSet(Arrays.stream(tokenUsageCheckWhitelist.split(",")).map(String::trim).filter(login -> !login.isEmpty()).collect(Collectors.toSet()));
+    }
+
+    public Set<String> getTokenUsageCheckWhitelistLogins() {
+        return tokenUsageCheckWhitelistLogins;
+    }
+
+    public TokenStatsBufferProperties getTokenStatsBuffer() {
+        return tokenStatsBuffer;
+    }
+
+    public void setTokenStatsBuffer(TokenStatsBufferProperties tokenStatsBuffer) {
+        this.tokenStatsBuffer = tokenStatsBuffer;
+    }
+
+    public TokenNearCacheProperties getTokenNearCache() {
+        return tokenNearCache;
+    }
+
+    public void setTokenNearCache(TokenNearCacheProperties tokenNearCache) {
+        this.tokenNearCache = tokenNearCache;
+    }
+
+    public TokenUsageMeterProperties getTokenUsageMeter() {
+        return tokenUsageMeter;
+    }
+
+    public void setTokenUsageMeter(TokenUsageMeterProperties tokenUsageMeter) {
+        this.tokenUsageMeter = tokenUsageMeter;
+    }
+
+    public RateLimitProperties getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimitProperties rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public TokenUsageRecorderProperties getTokenUsageRecorder() {
+        return tokenUsageRecorder;
+    }
+
+    public void setTokenUsageRecorder(TokenUsageRecorderProperties tokenUsageRecorder) {
+        this.tokenUsageRecorder = tokenUsageRecorder;
+    }
+
+    public TwoTierCacheProperties getTwoTierCache() {
+        return twoTierCache;
+    }
+
+    public void setTwoTierCache(TwoTierCacheProperties twoTierCache) {
+        this.twoTierCache = twoTierCache;
+    }
+
+    public CacheWarmUpProperties getCacheWarmUp() {
+        return cacheWarmUp;
+    }
+
+    public void setCacheWarmUp(CacheWarmUpProperties cacheWarmUp) {
+        this.cacheWarmUp = cacheWarmUp;
+    }
+
+    public UsageAnalysisProperties getUsageAnalysis() {
+        return usageAnalysis;
+    }
+
+    public void setUsageAnalysis(UsageAnalysisProperties usageAnalysis) {
+        this.usageAnalysis = usageAnalysis;
     }
 
     public int getPublicWebsiteApiThreshold() {
@@ -0,0 +1,62 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the cache warm-up when the application starts. The tokens used within the active period are loaded in
+ * batches by the given number of threads. The active period and the timeout are in seconds.
+ */
+public class CacheWarmUpProperties {
+    private boolean enabled = true;
+    private int activePeriod = 86400;
+    private int maxTokens = 5000;
+    private int batchSize = 100;
+    private int parallelism = 4;
+    private int timeout = 120;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getActivePeriod() {
+        return activePeriod;
+    }
+
+    public void setActivePeriod(int activePeriod) {
+        this.activePeriod = activePeriod;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+}
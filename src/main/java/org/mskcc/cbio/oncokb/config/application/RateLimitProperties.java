@@ -0,0 +1,97 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the rate limits of the api requests, per client ip and per token. The limit of a token depends on the
+ * authorities of its user. A limit without requests per second is not enforced.
+ */
+public class RateLimitProperties {
+    private boolean enabled = false;
+    private boolean redisEnabled = false;
+    // The proxies in front of the application appending to X-Forwarded-For, the entries before theirs are set by the client
+    private int trustedProxies = 1;
+    private Limit ip = new Limit();
+    private Limit publicWebsite = new Limit();
+    private Limit bot = new Limit();
+    private Limit user = new Limit();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    public void setRedisEnabled(boolean redisEnabled) {
+        this.redisEnabled = redisEnabled;
+    }
+
+    public int getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(int trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public Limit getIp() {
+        return ip;
+    }
+
+    public void setIp(Limit ip) {
+        this.ip = ip;
+    }
+
+    public Limit getPublicWebsite() {
+        return publicWebsite;
+    }
+
+    public void setPublicWebsite(Limit publicWebsite) {
+        this.publicWebsite = publicWebsite;
+    }
+
+    public Limit getBot() {
+        return bot;
+    }
+
+    public void setBot(Limit bot) {
+        this.bot = bot;
+    }
+
+    public Limit getUser() {
+        return user;
+    }
+
+    public void setUser(Limit user) {
+        this.user = user;
+    }
+
+    public static class Limit {
+        private Integer requestsPerSecond;
+        private int burst = 1;
+
+        public Integer getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(Integer requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public boolean isEnforced() {
+            return requestsPerSecond != null && requestsPerSecond > 0;
+        }
+    }
+}
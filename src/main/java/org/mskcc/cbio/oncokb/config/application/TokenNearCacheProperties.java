@@ -0,0 +1,71 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the in-process cache of the resolved tokens, in front of the redis caches.
+ * The times to live and the bloom filter rebuild interval are in seconds.
+ */
+public class TokenNearCacheProperties {
+    private boolean enabled = true;
+    private int timeToLive = 10;
+    private int maxEntries = 10000;
+    private int negativeTimeToLive = 30;
+    private boolean bloomFilterEnabled = false;
+    private double bloomFilterFalsePositiveRate = 0.01;
+    private int bloomFilterRebuildInterval = 3600;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getNegativeTimeToLive() {
+        return negativeTimeToLive;
+    }
+
+    public void setNegativeTimeToLive(int negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    public boolean isBloomFilterEnabled() {
+        return bloomFilterEnabled;
+    }
+
+    public void setBloomFilterEnabled(boolean bloomFilterEnabled) {
+        this.bloomFilterEnabled = bloomFilterEnabled;
+    }
+
+    public double getBloomFilterFalsePositiveRate() {
+        return bloomFilterFalsePositiveRate;
+    }
+
+    public void setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate) {
+        this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+    }
+
+    public int getBloomFilterRebuildInterval() {
+        return bloomFilterRebuildInterval;
+    }
+
+    public void setBloomFilterRebuildInterval(int bloomFilterRebuildInterval) {
+        this.bloomFilterRebuildInterval = bloomFilterRebuildInterval;
+    }
+}
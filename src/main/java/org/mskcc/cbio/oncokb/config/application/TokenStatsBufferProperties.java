@@ -0,0 +1,44 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the in-memory buffer the token stats are written through.
+ * The flush interval is in seconds.
+ */
+public class TokenStatsBufferProperties {
+    private boolean enabled = true;
+    private int capacity = 100000;
+    private int batchSize = 500;
+    private int flushInterval = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+}
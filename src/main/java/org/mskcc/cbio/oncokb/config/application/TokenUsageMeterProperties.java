@@ -0,0 +1,26 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the real time token usage counters used to enforce the token usage limits.
+ * The flush interval is in seconds.
+ */
+public class TokenUsageMeterProperties {
+    private boolean enabled = true;
+    private int flushInterval = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+}
@@ -0,0 +1,11 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * What the token usage recorder does with a usage event when its queue is full.
+ */
+public enum TokenUsageRecorderOverflowPolicy {
+    // Drop the event, the usage is not recorded
+    DROP,
+    // Record the event on the request thread
+    CALLER_RUNS
+}
@@ -0,0 +1,34 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the executor recording the token usage of the proxied requests.
+ */
+public class TokenUsageRecorderProperties {
+    private int poolSize = 2;
+    private int queueCapacity = 10000;
+    private TokenUsageRecorderOverflowPolicy overflowPolicy = TokenUsageRecorderOverflowPolicy.DROP;
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public TokenUsageRecorderOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(TokenUsageRecorderOverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+}
@@ -0,0 +1,38 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the in-process tier in front of the redis caches. Only the caches listed here, by their name without the
+ * application prefix, get the local tier. The time to live is in seconds.
+ */
+public class TwoTierCacheProperties {
+    private List<String> caches = new ArrayList<>();
+    private int maxEntries = 10000;
+    private int timeToLive = 30;
+
+    public List<String> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(List<String> caches) {
+        this.caches = caches;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+}
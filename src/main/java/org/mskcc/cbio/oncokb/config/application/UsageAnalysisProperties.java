@@ -0,0 +1,26 @@
+package org.mskcc.cbio.oncokb.config.application;
+
+/**
+ * Settings of the usage analysis export. The files are written to the scratch directory before they are uploaded, the
+ * temporary directory of the system when it is not set, and optionally gzip compressed.
+ */
+public class UsageAnalysisProperties {
+    private String scratchDirectory;
+    private boolean gzip = false;
+
+    public String getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    public void setScratchDirectory(String scratchDirectory) {
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+}
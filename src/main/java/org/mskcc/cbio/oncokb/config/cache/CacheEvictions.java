@@ -0,0 +1,29 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Evicts many keys of a cache at once, in a single redis call when the cache is a JCache cache.
+ */
+public final class CacheEvictions {
+
+    private CacheEvictions() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void evictAll(Cache cache, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (cache instanceof TwoTierCache) {
+            ((TwoTierCache) cache).evictAll(keys);
+        } else if (cache.getNativeCache() instanceof javax.cache.Cache) {
+            ((javax.cache.Cache<Object, Object>) cache.getNativeCache()).removeAll(new HashSet<>(keys));
+        } else {
+            keys.forEach(cache::evict);
+        }
+    }
+}
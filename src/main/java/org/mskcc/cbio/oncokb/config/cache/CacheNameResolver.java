@@ -18,4 +18,15 @@ public class CacheNameResolver {
     public String getCacheName(String cacheKey) {
         return applicationProperties.getName() + "-" + cacheKey;
     }
+
+    /**
+     * Hibernate prefixes its cache regions itself, and joins the prefix and the region name with a dot.
+     */
+    public String getHibernateRegionPrefix() {
+        return applicationProperties.getName();
+    }
+
+    public String getHibernateRegionName(String region) {
+        return getHibernateRegionPrefix() + "." + region;
+    }
 }
@@ -0,0 +1,319 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.mskcc.cbio.oncokb.domain.Authority;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.domain.User;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.springframework.cache.support.NullValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Redis codec writing the cached tokens, users and authorities field by field, without the class descriptors of the
+ * java serialization.
+ * <p>
+ * The values start with a magic byte, the schema version and the type. Any other value is encoded by the delegate
+ * codec, and values without the magic byte, such as the ones written before this codec was used, are decoded by the
+ * delegate as well. A value of an unknown schema version is decoded as null, which the caches treat as a miss.
+ * <p>
+ * Change {@link #VERSION} whenever the layout of a type changes.
+ */
+public class TokenUserCodec extends BaseCodec {
+    static final byte MAGIC = (byte) 0xCB;
+    static final byte VERSION = 1;
+
+    private static final byte TYPE_TOKEN = 1;
+    private static final byte TYPE_USER = 2;
+    private static final byte TYPE_AUTHORITY = 3;
+    private static final byte TYPE_TOKEN_LIST = 4;
+    private static final byte TYPE_NULL_VALUE = 5;
+
+    private final Codec delegate;
+
+    private final Encoder encoder = new Encoder() {
+        @Override
+        public ByteBuf encode(Object in) throws IOException {
+            byte type = typeOf(in);
+            if (type == 0) {
+                return delegate.getValueEncoder().encode(in);
+            }
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
+            try (ByteBufOutputStream stream = new ByteBufOutputStream(out)) {
+                stream.writeByte(MAGIC);
+                stream.writeByte(VERSION);
+                stream.writeByte(type);
+                writeValue(stream, type, in);
+                return out;
+            } catch (IOException | RuntimeException e) {
+                out.release();
+                throw e;
+            }
+        }
+    };
+
+    private final Decoder<Object> decoder = new Decoder<Object>() {
+        @Override
+        public Object decode(ByteBuf buf, State state) throws IOException {
+            if (!buf.isReadable() || buf.getByte(buf.readerIndex()) != MAGIC) {
+                return delegate.getValueDecoder().decode(buf, state);
+            }
+            try (ByteBufInputStream stream = new ByteBufInputStream(buf)) {
+                stream.readByte();
+                if (stream.readByte() != VERSION) {
+                    return null;
+                }
+                return readValue(stream, stream.readByte());
+            }
+        }
+    };
+
+    public TokenUserCodec(Codec delegate) {
+        this.delegate = delegate;
+    }
+
+    // Used by redisson to copy the codec for another class loader
+    public TokenUserCodec(ClassLoader classLoader, TokenUserCodec codec) throws ReflectiveOperationException {
+        this(copy(classLoader, codec.delegate));
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return delegate.getClassLoader();
+    }
+
+    private static byte typeOf(Object in) {
+        if (in instanceof Token) {
+            return TYPE_TOKEN;
+        }
+        if (in instanceof User) {
+            return TYPE_USER;
+        }
+        if (in instanceof Authority) {
+            return TYPE_AUTHORITY;
+        }
+        if (in instanceof NullValue) {
+            return TYPE_NULL_VALUE;
+        }
+        // The tokens of a user, as returned by the repository
+        if (in instanceof ArrayList && ((List<?>) in).stream().allMatch(element -> element instanceof Token)) {
+            return TYPE_TOKEN_LIST;
+        }
+        return 0;
+    }
+
+    private static void writeValue(DataOutput out, byte type, Object in) throws IOException {
+        switch (type) {
+            case TYPE_TOKEN:
+                writeToken(out, (Token) in);
+                break;
+            case TYPE_USER:
+                writeUser(out, (User) in);
+                break;
+            case TYPE_AUTHORITY:
+                writeString(out, ((Authority) in).getName());
+                break;
+            case TYPE_TOKEN_LIST:
+                List<?> tokens = (List<?>) in;
+                out.writeInt(tokens.size());
+                for (Object token : tokens) {
+                    writeToken(out, (Token) token);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Object readValue(DataInput in, byte type) throws IOException {
+        switch (type) {
+            case TYPE_TOKEN:
+                return readToken(in);
+            case TYPE_USER:
+                return readUser(in);
+            case TYPE_AUTHORITY:
+                return readAuthority(in);
+            case TYPE_TOKEN_LIST:
+                int size = in.readInt();
+                List<Token> tokens = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    tokens.add(readToken(in));
+                }
+                return tokens;
+            case TYPE_NULL_VALUE:
+                return NullValue.INSTANCE;
+            default:
+                throw new IOException("Unknown type " + type);
+        }
+    }
+
+    private static void writeToken(DataOutput out, Token token) throws IOException {
+        writeLong(out, token.getId());
+        UUID uuid = token.getToken();
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+        writeInstant(out, token.getCreation());
+        writeInstant(out, token.getExpiration());
+        writeInteger(out, token.getUsageLimit());
+        writeInteger(out, token.getCurrentUsage());
+        out.writeByte(token.isRenewable() == null ? -1 : (token.isRenewable() ? 1 : 0));
+        out.writeBoolean(token.getUser() != null);
+        if (token.getUser() != null) {
+            writeUser(out, token.getUser());
+        }
+    }
+
+    private static Token readToken(DataInput in) throws IOException {
+        Token token = new Token();
+        token.setId(readLong(in));
+        if (in.readBoolean()) {
+            token.setToken(new UUID(in.readLong(), in.readLong()));
+        }
+        token.setCreation(readInstant(in));
+        token.setExpiration(readInstant(in));
+        token.setUsageLimit(readInteger(in));
+        token.setCurrentUsage(readInteger(in));
+        byte renewable = in.readByte();
+        token.setRenewable(renewable == -1 ? null : renewable == 1);
+        if (in.readBoolean()) {
+            token.setUser(readUser(in));
+        }
+        return token;
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+        writeLong(out, user.getId());
+        writeString(out, user.getLogin());
+        writeString(out, user.getPassword());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeString(out, user.getEmail());
+        out.writeBoolean(user.getActivated());
+        writeString(out, user.getLangKey());
+        writeString(out, user.getImageUrl());
+        writeString(out, user.getActivationKey());
+        writeString(out, user.getResetKey());
+        writeInstant(out, user.getResetDate());
+        writeString(out, user.getCreatedBy());
+        writeInstant(out, user.getCreatedDate());
+        writeString(out, user.getLastModifiedBy());
+        writeInstant(out, user.getLastModifiedDate());
+        Set<Authority> authorities = user.getAuthorities();
+        out.writeInt(authorities == null ? -1 : authorities.size());
+        if (authorities != null) {
+            for (Authority authority : authorities) {
+                writeString(out, authority.getName());
+            }
+        }
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+        User user = new User();
+        user.setId(readLong(in));
+        user.setLogin(readString(in));
+        user.setPassword(readString(in));
+        user.setFirstName(readString(in));
+        user.setLastName(readString(in));
+        user.setEmail(readString(in));
+        user.setActivated(in.readBoolean());
+        user.setLangKey(readString(in));
+        user.setImageUrl(readString(in));
+        user.setActivationKey(readString(in));
+        user.setResetKey(readString(in));
+        user.setResetDate(readInstant(in));
+        user.setCreatedBy(readString(in));
+        user.setCreatedDate(readInstant(in));
+        user.setLastModifiedBy(readString(in));
+        user.setLastModifiedDate(readInstant(in));
+        int authorityCount = in.readInt();
+        if (authorityCount == -1) {
+            user.setAuthorities(null);
+        } else {
+            Set<Authority> authorities = new HashSet<>();
+            for (int i = 0; i < authorityCount; i++) {
+                authorities.add(readAuthority(in));
+            }
+            user.setAuthorities(authorities);
+        }
+        return user;
+    }
+
+    private static Authority readAuthority(DataInput in) throws IOException {
+        Authority authority = new Authority();
+        authority.setName(readString(in));
+        return authority;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeInstant(DataOutput out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
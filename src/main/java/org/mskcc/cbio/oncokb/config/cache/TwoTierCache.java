@@ -0,0 +1,202 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Cache} with a size and time bound local tier in front of the redis cache it decorates.
+ * <p>
+ * Evicting or clearing the cache is published to the other instances, which then drop their local copies. The local
+ * tier keeps the values encoded by the redis codec and decodes them on every hit, so each caller gets its own copy of
+ * the cached tokens and users, which are mutable entities, while the redis round trip is still saved.
+ */
+public class TwoTierCache implements Cache {
+    private final Cache redisCache;
+
+    private final Codec codec;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, byte[]> localCache;
+
+    // Called with the cache name and the evicted keys, or null keys when the cache is cleared
+    private final BiConsumer<String, Collection<?>> invalidationPublisher;
+
+    private final Counter localHits;
+
+    private final Counter redisHits;
+
+    private final Counter misses;
+
+    private final Counter redisEvictions;
+
+    public TwoTierCache(Cache redisCache, Codec codec, int maxEntries, int timeToLive, BiConsumer<String, Collection<?>> invalidationPublisher,
+                        MeterRegistry meterRegistry) {
+        this.redisCache = redisCache;
+        this.codec = codec;
+        this.invalidationPublisher = invalidationPublisher;
+
+        String name = redisCache.getName();
+        Counter localEvictions = meterRegistry.counter("oncokb.cache.evictions", "cache", name, "tier", "local");
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(timeToLive, TimeUnit.SECONDS)
+            .removalListener((key, value, cause) -> {
+                if (cause.wasEvicted()) {
+                    localEvictions.increment();
+                }
+            })
+            .build();
+        this.localHits = meterRegistry.counter("oncokb.cache.requests", "cache", name, "tier", "local", "result", "hit");
+        this.redisHits = meterRegistry.counter("oncokb.cache.requests", "cache", name, "tier", "redis", "result", "hit");
+        this.misses = meterRegistry.counter("oncokb.cache.requests", "cache", name, "tier", "redis", "result", "miss");
+        this.redisEvictions = meterRegistry.counter("oncokb.cache.evictions", "cache", name, "tier", "redis");
+        meterRegistry.gauge("oncokb.cache.size", Tags.of("cache", name, "tier", "local"), localCache,
+            com.github.benmanes.caffeine.cache.Cache::estimatedSize);
+    }
+
+    @Override
+    public String getName() {
+        return redisCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        byte[] encoded = localCache.getIfPresent(key);
+        if (encoded != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(decode(encoded));
+        }
+        ValueWrapper value = redisCache.get(key);
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        redisHits.increment();
+        putLocally(key, value.get());
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null || value.get() == null) {
+            return null;
+        }
+        if (type != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value.get());
+        }
+        return (T) value.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        T loaded = redisCache.get(key, valueLoader);
+        putLocally(key, loaded);
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        putLocally(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        putLocally(key, existing == null ? value : existing.get());
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        localCache.invalidate(key);
+        redisEvictions.increment();
+        invalidationPublisher.accept(getName(), Collections.singletonList(key));
+    }
+
+    /**
+     * Evict the keys with a single redis call and a single invalidation message.
+     */
+    public void evictAll(Collection<?> keys) {
+        CacheEvictions.evictAll(redisCache, keys);
+        localCache.invalidateAll(keys);
+        redisEvictions.increment(keys.size());
+        invalidationPublisher.accept(getName(), keys);
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        invalidationPublisher.accept(getName(), null);
+    }
+
+    /**
+     * Drop the local copies after the cache has been changed on another instance, or all of them when the keys are null.
+     */
+    void invalidateLocally(Collection<?> keys) {
+        if (keys == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidateAll(keys);
+        }
+    }
+
+    private void putLocally(Object key, Object value) {
+        localCache.put(key, encode(value));
+    }
+
+    private byte[] encode(Object value) {
+        ByteBuf buf;
+        try {
+            buf = codec.getValueEncoder().encode(value == null ? NullValue.INSTANCE : value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private Object decode(byte[] encoded) {
+        Object value;
+        try {
+            value = codec.getValueDecoder().decode(Unpooled.wrappedBuffer(encoded), new State());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return value instanceof NullValue ? null : value;
+    }
+}
@@ -0,0 +1,136 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mskcc.cbio.oncokb.config.application.TwoTierCacheProperties;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Decorates the redis cache manager with a local tier for the configured caches. The other caches are returned as they
+ * are.
+ * <p>
+ * The evictions are published on a redis topic, every instance drops the evicted keys from its local tier.
+ */
+public class TwoTierCacheManager implements CacheManager, DisposableBean {
+    public static final String CACHE_INVALIDATION_TOPIC = "cacheInvalidation";
+
+    private final Logger log = LoggerFactory.getLogger(TwoTierCacheManager.class);
+
+    private final CacheManager redisCacheManager;
+
+    private final TwoTierCacheProperties properties;
+
+    private final Set<String> twoTierCacheNames;
+
+    private final RTopic invalidationTopic;
+
+    private final MeterRegistry meterRegistry;
+
+    // The codec of the redis caches, which also encodes the values of the local tiers
+    private final Codec codec;
+
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    private int listenerId = -1;
+
+    public TwoTierCacheManager(CacheManager redisCacheManager, TwoTierCacheProperties properties, RedissonClient redissonClient,
+                               CacheNameResolver cacheNameResolver, MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.properties = properties;
+        this.twoTierCacheNames = properties.getCaches().stream().map(cacheNameResolver::getCacheName).collect(Collectors.toSet());
+        this.invalidationTopic = redissonClient.getTopic(cacheNameResolver.getCacheName(CACHE_INVALIDATION_TOPIC));
+        this.meterRegistry = meterRegistry;
+        this.codec = redissonClient.getConfig().getCodec();
+        try {
+            this.listenerId = invalidationTopic.addListener(CacheInvalidation.class, (channel, message) -> onInvalidation(message));
+        } catch (RuntimeException e) {
+            // Without the invalidation messages, the local copies are still dropped once they expire
+            log.warn("Failed to subscribe to the cache invalidation topic", e);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        if (!twoTierCacheNames.contains(name)) {
+            return redisCacheManager.getCache(name);
+        }
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName ->
+            new TwoTierCache(redisCache, codec, properties.getMaxEntries(), properties.getTimeToLive(), this::publish, meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void destroy() {
+        if (listenerId != -1) {
+            invalidationTopic.removeListener(listenerId);
+        }
+    }
+
+    private void publish(String cacheName, Collection<?> keys) {
+        try {
+            invalidationTopic.publish(new CacheInvalidation(cacheName, keys == null ? null : new ArrayList<>(keys)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish the invalidation of the cache {}", cacheName, e);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        TwoTierCache cache = caches.get(invalidation.getCacheName());
+        if (cache != null) {
+            cache.invalidateLocally(invalidation.getKeys());
+        }
+    }
+
+    /**
+     * The evicted keys, or null keys when the whole cache was cleared.
+     */
+    public static class CacheInvalidation implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        private String cacheName;
+        private ArrayList<Object> keys;
+
+        public CacheInvalidation() {
+        }
+
+        public CacheInvalidation(String cacheName, ArrayList<Object> keys) {
+            this.cacheName = cacheName;
+            this.keys = keys;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public List<Object> getKeys() {
+            return keys;
+        }
+    }
+}
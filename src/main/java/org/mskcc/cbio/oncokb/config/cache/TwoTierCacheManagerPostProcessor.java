@@ -0,0 +1,37 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Wraps the cache manager configured by spring boot in a {@link TwoTierCacheManager} when any cache is configured to
+ * have a local tier. The cache resolvers and the services evicting the caches keep using the {@code cacheManager} bean.
+ */
+public class TwoTierCacheManagerPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof CacheManager) || bean instanceof TwoTierCacheManager || !"cacheManager".equals(beanName)) {
+            return bean;
+        }
+        // Looked up here rather than injected, a bean post processor is created before the other beans
+        ApplicationProperties applicationProperties = beanFactory.getBean(ApplicationProperties.class);
+        if (applicationProperties.getTwoTierCache().getCaches().isEmpty()) {
+            return bean;
+        }
+        return new TwoTierCacheManager((CacheManager) bean, applicationProperties.getTwoTierCache(), beanFactory.getBean(RedissonClient.class),
+            beanFactory.getBean(CacheNameResolver.class), beanFactory.getBean(MeterRegistry.class));
+    }
+}
@@ -1,6 +1,9 @@
 package org.mskcc.cbio.oncokb.domain;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 import java.io.Serializable;
@@ -12,6 +15,7 @@ import org.mskcc.cbio.oncokb.domain.enumeration.LicenseType;
  */
 @Entity
 @Table(name = "user_details")
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class UserDetails implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,11 @@
+package org.mskcc.cbio.oncokb.querydomain;
+
+import java.util.UUID;
+
+/**
+ * A token used recently, with the login of its user.
+ */
+public interface RecentTokenAccess {
+    UUID getToken();
+    String getLogin();
+}
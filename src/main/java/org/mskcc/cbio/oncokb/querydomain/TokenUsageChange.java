@@ -0,0 +1,9 @@
+package org.mskcc.cbio.oncokb.querydomain;
+
+/**
+ * A token whose current usage differs from its token stats, with the login of its user.
+ */
+public interface TokenUsageChange {
+    String getToken();
+    String getLogin();
+}
@@ -0,0 +1,34 @@
+package org.mskcc.cbio.oncokb.querydomain;
+
+/**
+ * The name and email of a user, loaded without the authorities of the user.
+ */
+public class UserContact {
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+
+    public UserContact(Long id, String firstName, String lastName, String email) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
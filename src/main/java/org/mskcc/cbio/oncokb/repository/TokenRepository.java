@@ -1,6 +1,7 @@
 package org.mskcc.cbio.oncokb.repository;
 
 import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.querydomain.TokenUsageChange;
 
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.*;
@@ -16,7 +17,7 @@ import java.util.UUID;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface TokenRepository extends JpaRepository<Token, Long> {
+public interface TokenRepository extends JpaRepository<Token, Long>, TokenRepositoryCustom {
 
     @Query("select token from Token token where token.user.login = ?#{principal.username}")
     List<Token> findByUserIsCurrentUser();
@@ -25,6 +26,12 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     @Query("update Token token set token.currentUsage=token.currentUsage + ?2 where token.id = ?1")
     void increaseTokenUsage(Long id, int increment);
 
+    // Same join as updateCurrentUsageFromTokenStats
+    @Query(value = "select t.token as token, u.login as login from token t join jhi_user u on u.id = t.user_id " +
+        " left join (select token_id, sum(usage_count) as usage_count from token_stats where access_time < ?1 group by token_id) s on s.token_id = t.id " +
+        " where t.current_usage <> coalesce(s.usage_count, 0)", nativeQuery = true)
+    List<TokenUsageChange> findTokenUsageChanges(Instant before);
+
     @Query("select token from Token token where token.expiration < ?1")
     List<Token> findAllExpiresBeforeDate(Instant date);
 
@@ -34,6 +41,9 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     @Cacheable(cacheResolver = "tokenCacheResolver")
     Optional<Token> findByToken(UUID token);
 
+    @Query("select token.token from Token token where token.expiration > ?1")
+    List<UUID> findAllTokenValuesExpiresAfterDate(Instant date);
+
     @Cacheable(cacheResolver = "tokenCacheResolver")
     @Query("select token from Token token where token.user.login = ?1")
     List<Token> findByUserLogin(String login);
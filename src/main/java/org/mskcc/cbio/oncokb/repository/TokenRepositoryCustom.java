@@ -0,0 +1,16 @@
+package org.mskcc.cbio.oncokb.repository;
+
+import java.time.Instant;
+
+/**
+ * Statements of the {@link TokenRepository} run through the entity manager.
+ */
+public interface TokenRepositoryCustom {
+
+    /**
+     * Set the current usage of every token to the sum of its token stats accessed before the instant.
+     *
+     * @return the number of tokens updated
+     */
+    int updateCurrentUsageFromTokenStats(Instant before);
+}
@@ -0,0 +1,30 @@
+package org.mskcc.cbio.oncokb.repository;
+
+import org.hibernate.query.NativeQuery;
+import org.mskcc.cbio.oncokb.domain.Token;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+
+public class TokenRepositoryCustomImpl implements TokenRepositoryCustom {
+
+    // MySQL specific, the current usage of every token is set in a single statement
+    private static final String UPDATE_CURRENT_USAGE_FROM_TOKEN_STATS = "update token t " +
+        " left join (select token_id, sum(usage_count) as usage_count from token_stats where access_time < ?1 group by token_id) s on s.token_id = t.id " +
+        " set t.current_usage = coalesce(s.usage_count, 0) " +
+        " where t.current_usage <> coalesce(s.usage_count, 0)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateCurrentUsageFromTokenStats(Instant before) {
+        // Without a query space, hibernate would evict every second level cache region and the query cache
+        return entityManager.createNativeQuery(UPDATE_CURRENT_USAGE_FROM_TOKEN_STATS)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedEntityClass(Token.class)
+            .setParameter(1, before)
+            .executeUpdate();
+    }
+}
@@ -2,8 +2,10 @@ package org.mskcc.cbio.oncokb.repository;
 
 import org.mskcc.cbio.oncokb.domain.TokenStats;
 
+import org.mskcc.cbio.oncokb.querydomain.RecentTokenAccess;
 import org.mskcc.cbio.oncokb.querydomain.UserTokenUsage;
 import org.mskcc.cbio.oncokb.querydomain.UserTokenUsageWithInfo;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -26,4 +28,11 @@ public interface TokenStatsRepository extends JpaRepository<TokenStats, Long> {
     " where tokenStats.accessTime > ?1 " + 
     " group by tokenStats.token, DATE_FORMAT(tokenStats.accessTime,'%Y-%m'), tokenStats.resource")
     List<UserTokenUsageWithInfo> countTokenUsageByTokenTimeResource(Instant after);
+
+    @Query("select token.token as token, user.login as login " +
+        " from TokenStats tokenStats join tokenStats.token token join token.user user " +
+        " where tokenStats.accessTime > ?1 " +
+        " group by token.token, user.login " +
+        " order by max(tokenStats.accessTime) desc")
+    List<RecentTokenAccess> findRecentTokenAccesses(Instant after, Pageable pageable);
 }
@@ -6,6 +6,9 @@ import org.mskcc.cbio.oncokb.domain.UserDetails;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -16,8 +19,14 @@ import java.util.Optional;
 @Repository
 public interface UserDetailsRepository extends JpaRepository<UserDetails, Long> {
 
+    // Looked up for every user mapped to a DTO, the result is invalidated by any change to the user details
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
     Optional<UserDetails> findOneByUser(User user);
 
+    // The users are fetched in the same query, instead of one query per user details
+    @Query("select ud from UserDetails ud join fetch ud.user u where u.id in ?1")
+    List<UserDetails> findAllByUserIdIn(Collection<Long> userIds);
+
     @Query("select ud from UserDetails ud where ud.additionalInfo like %?1%")
     Optional<UserDetails> findOneByTrialActivationKey(String key);
 }
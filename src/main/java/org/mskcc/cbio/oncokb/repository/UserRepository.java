@@ -3,6 +3,7 @@ package org.mskcc.cbio.oncokb.repository;
 import org.mskcc.cbio.oncokb.domain.User;
 
 import org.mskcc.cbio.oncokb.domain.enumeration.LicenseType;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,6 +12,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.time.Instant;
@@ -48,4 +50,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
 
     Page<User> findAllByLoginNot(Pageable pageable, String login);
+
+    // The authorities are eagerly fetched with the users, a single query is run without them
+    @Query("select new org.mskcc.cbio.oncokb.querydomain.UserContact(user.id, user.firstName, user.lastName, user.email) from User user where user.id in ?1")
+    List<UserContact> findAllContactsByIdIn(Collection<Long> ids);
 }
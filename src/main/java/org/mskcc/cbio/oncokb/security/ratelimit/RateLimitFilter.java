@@ -0,0 +1,63 @@
+package org.mskcc.cbio.oncokb.security.ratelimit;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects the api requests over the rate limits with 429 Too Many Requests. Runs after the {@code UUIDFilter}, so the
+ * requests with a token are limited per token as well.
+ */
+public class RateLimitFilter extends GenericFilterBean {
+
+    public static final String IP_HEADER = "X-FORWARDED-FOR";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+        throws IOException, ServletException {
+        HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
+        if (rateLimiter.isEnabled() && httpServletRequest.getRequestURI().startsWith("/api/")) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            long wait = rateLimiter.tryAcquire(authentication, resolveClientIp(httpServletRequest, rateLimiter.getTrustedProxies()));
+            if (wait > 0) {
+                HttpServletResponse httpServletResponse = (HttpServletResponse) servletResponse;
+                httpServletResponse.setStatus(TOO_MANY_REQUESTS);
+                httpServletResponse.setHeader("Retry-After", String.valueOf(Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+                return;
+            }
+        }
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+
+    /**
+     * Every proxy appends the address it received the request from, and the client can send any entries before them.
+     * The client is the address appended by the outermost of the trusted proxies, counted from the right.
+     */
+    static String resolveClientIp(HttpServletRequest request, int trustedProxies) {
+        String forwardedFor = request.getHeader(IP_HEADER);
+        if (trustedProxies <= 0 || forwardedFor == null || forwardedFor.trim().isEmpty()) {
+            return request.getRemoteAddr();
+        }
+        String[] addresses = forwardedFor.split(",");
+        // Fewer entries than trusted proxies, all of them have been appended by the proxies
+        String clientIp = addresses[Math.max(0, addresses.length - trustedProxies)].trim();
+        return clientIp.isEmpty() ? request.getRemoteAddr() : clientIp;
+    }
+}
@@ -0,0 +1,174 @@
+package org.mskcc.cbio.oncokb.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.RateLimitProperties;
+import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
+import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Token bucket rate limits of the requests, per client ip and per token. The limit of a token is the one of the most
+ * specific authority of its user, the tokens of the admins are not limited.
+ * <p>
+ * The buckets are kept in memory on each instance. When redis is enabled, a request allowed locally also has to be
+ * allowed by the redis rate limiter of the same key, shared by all the instances.
+ */
+@Component
+public class RateLimiter {
+    public static final String RATE_LIMITERS = "rateLimiters";
+
+    private static final long REDIS_RETRY_AFTER = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final RedissonClient redissonClient;
+
+    private final String redisPrefix;
+
+    private final Cache<String, Bucket> buckets = Caffeine.newBuilder()
+        .maximumSize(100000)
+        .expireAfterAccess(10, TimeUnit.MINUTES)
+        // Recreated before their redis rate limiter expires
+        .expireAfterWrite(1, TimeUnit.HOURS)
+        .build();
+
+    private final MeterRegistry meterRegistry;
+
+    public RateLimiter(ApplicationProperties applicationProperties, RedissonClient redissonClient, CacheNameResolver cacheNameResolver,
+                       MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.redissonClient = redissonClient;
+        this.redisPrefix = cacheNameResolver.getCacheName(RATE_LIMITERS) + ":";
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("oncokb.rate.limit.buckets", buckets, cache -> cache.estimatedSize());
+    }
+
+    public boolean isEnabled() {
+        return applicationProperties.getRateLimit().isEnabled();
+    }
+
+    public int getTrustedProxies() {
+        return applicationProperties.getRateLimit().getTrustedProxies();
+    }
+
+    /**
+     * @param authentication the authentication of the request, null when it is anonymous
+     * @param clientIp       the ip of the client
+     * @return 0 when the request is allowed, otherwise the nanoseconds to wait before retrying
+     */
+    public long tryAcquire(Authentication authentication, String clientIp) {
+        RateLimitProperties rateLimit = applicationProperties.getRateLimit();
+        Set<String> authorities = authentication == null ? null : authentication.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .collect(Collectors.toSet());
+        if (authorities != null && authorities.contains(AuthoritiesConstants.ADMIN)) {
+            return 0;
+        }
+
+        long wait = tryAcquire("ip", clientIp, rateLimit.getIp());
+        if (wait > 0) {
+            return wait;
+        }
+        if (authentication != null && authentication.getCredentials() instanceof UUID) {
+            String authority = getLimitedAuthority(authorities);
+            if (authority != null) {
+                return tryAcquire(authority, authentication.getCredentials().toString(), getLimit(authority));
+            }
+        }
+        return 0;
+    }
+
+    private long tryAcquire(String type, String key, RateLimitProperties.Limit limit) {
+        if (key == null || !limit.isEnforced()) {
+            return 0;
+        }
+        Bucket bucket = buckets.get(type + ":" + key, bucketKey -> newBucket(bucketKey, limit));
+        long wait = bucket.local.tryAcquire(System.nanoTime());
+        if (wait == 0 && bucket.global != null) {
+            try {
+                if (!bucket.global.tryAcquire()) {
+                    wait = REDIS_RETRY_AFTER;
+                }
+            } catch (RuntimeException e) {
+                // Fall back to the local limit only
+                log.warn("Failed to acquire the redis rate limiter {}", type, e);
+            }
+        }
+        if (wait > 0) {
+            meterRegistry.counter("oncokb.rate.limit.rejections", "type", type).increment();
+        }
+        return wait;
+    }
+
+    private Bucket newBucket(String bucketKey, RateLimitProperties.Limit limit) {
+        TokenBucket local = new TokenBucket(limit.getRequestsPerSecond(), limit.getBurst(), System.nanoTime());
+        RRateLimiter global = null;
+        if (applicationProperties.getRateLimit().isRedisEnabled()) {
+            try {
+                String name = redisPrefix + bucketKey;
+                global = redissonClient.getRateLimiter(name);
+                global.trySetRate(RateType.OVERALL, limit.getRequestsPerSecond(), 1, RateIntervalUnit.SECONDS);
+                // The limiters of the clients gone for a while are removed from redis
+                redissonClient.getKeys().expire(name, 2, TimeUnit.HOURS);
+            } catch (RuntimeException e) {
+                log.warn("Failed to create the redis rate limiter {}", bucketKey, e);
+                global = null;
+            }
+        }
+        return new Bucket(local, global);
+    }
+
+    // The most specific authority first, a bot or the public website user usually is a user too
+    private static String getLimitedAuthority(Set<String> authorities) {
+        if (authorities.contains(AuthoritiesConstants.PUBLIC_WEBSITE)) {
+            return AuthoritiesConstants.PUBLIC_WEBSITE;
+        }
+        if (authorities.contains(AuthoritiesConstants.BOT)) {
+            return AuthoritiesConstants.BOT;
+        }
+        if (authorities.contains(AuthoritiesConstants.USER)) {
+            return AuthoritiesConstants.USER;
+        }
+        return null;
+    }
+
+    private RateLimitProperties.Limit getLimit(String authority) {
+        RateLimitProperties rateLimit = applicationProperties.getRateLimit();
+        switch (authority) {
+            case AuthoritiesConstants.PUBLIC_WEBSITE:
+                return rateLimit.getPublicWebsite();
+            case AuthoritiesConstants.BOT:
+                return rateLimit.getBot();
+            default:
+                return rateLimit.getUser();
+        }
+    }
+
+    private static final class Bucket {
+        private final TokenBucket local;
+        private final RRateLimiter global;
+
+        private Bucket(TokenBucket local, RRateLimiter global) {
+            this.local = local;
+            this.global = global;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.mskcc.cbio.oncokb.security.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket implemented with the generic cell rate algorithm. The whole state is the theoretical arrival time of
+ * the next request, updated with compare-and-set, so the bucket never blocks.
+ */
+public class TokenBucket {
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final AtomicLong theoreticalArrivalTime;
+
+    /**
+     * @param requestsPerSecond the sustained rate
+     * @param burst             the number of requests allowed at once
+     * @param now               the current time in nanoseconds
+     */
+    public TokenBucket(int requestsPerSecond, int burst, long now) {
+        this.emissionInterval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        this.burstTolerance = emissionInterval * (Math.max(1, burst) - 1);
+        this.theoreticalArrivalTime = new AtomicLong(now);
+    }
+
+    /**
+     * @param now the current time in nanoseconds
+     * @return 0 when the request is allowed, otherwise the nanoseconds to wait before it would be
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = theoreticalArrivalTime.get();
+            long arrival = Math.max(current, now);
+            long wait = arrival - burstTolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, arrival + emissionInterval)) {
+                return 0;
+            }
+        }
+    }
+}
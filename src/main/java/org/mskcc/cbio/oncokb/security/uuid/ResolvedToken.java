@@ -0,0 +1,88 @@
+package org.mskcc.cbio.oncokb.security.uuid;
+
+import org.mskcc.cbio.oncokb.domain.Authority;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.domain.User;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of a token and of the user it belongs to, with everything needed to authenticate a request.
+ * The granted authorities are built once, and every request gets its own authentication from them, as the
+ * authentications are mutable.
+ */
+public final class ResolvedToken {
+    private final Long id;
+    private final UUID token;
+    private final Instant expiration;
+    private final Integer usageLimit;
+    private final int currentUsage;
+    private final String login;
+    private final List<String> authorities;
+    private final List<GrantedAuthority> grantedAuthorities;
+
+    public ResolvedToken(Token token, User user) {
+        this.id = token.getId();
+        this.token = token.getToken();
+        this.expiration = token.getExpiration();
+        this.usageLimit = token.getUsageLimit();
+        this.currentUsage = token.getCurrentUsage() == null ? 0 : token.getCurrentUsage();
+        this.login = user.getLogin();
+        this.authorities = Collections.unmodifiableList(user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toList()));
+        this.grantedAuthorities = Collections.unmodifiableList(this.authorities.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList()));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getToken() {
+        return token;
+    }
+
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    public Integer getUsageLimit() {
+        return usageLimit;
+    }
+
+    public int getCurrentUsage() {
+        return currentUsage;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * @return a new authentication of the token, which the request may change
+     */
+    public Authentication getAuthentication() {
+        return new UsernamePasswordAuthenticationToken(login, token, grantedAuthorities);
+    }
+
+    public boolean isValid() {
+        return isValid(0);
+    }
+
+    /**
+     * @param usageSinceSnapshot the usage of the token not included in its current usage yet
+     */
+    public boolean isValid(long usageSinceSnapshot) {
+        return expiration.isAfter(Instant.now()) && (usageLimit == null || currentUsage + usageSinceSnapshot < usageLimit);
+    }
+}
@@ -0,0 +1,364 @@
+package org.mskcc.cbio.oncokb.security.uuid;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.TokenNearCacheProperties;
+import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
+import org.mskcc.cbio.oncokb.repository.TokenRepository;
+import org.mskcc.cbio.oncokb.util.UuidBloomFilter;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-process cache of the resolved tokens in front of the redis token and user caches, so the steady state
+ * authentication does not go over the network.
+ * <p>
+ * Entries only live for a short time. They are also evicted on every instance as soon as a token or a user is changed,
+ * through a redis topic. Unknown tokens are remembered for a short time as well, and when the bloom filter is enabled,
+ * tokens that are not in the filter of the valid tokens are rejected without a database lookup.
+ * <p>
+ * The invalidation messages adding the new tokens to the filters of the other instances can be lost, so the tokens
+ * created or changed are also recorded in a redis set. A token missing from the filter is only rejected when it is not
+ * in that set either, and the set keeps the tokens for twice the rebuild interval, longer than any filter lives.
+ */
+@Component
+public class TokenNearCache {
+    public static final String TOKEN_INVALIDATION_TOPIC = "tokenInvalidation";
+    public static final String CHANGED_TOKENS = "changedTokens";
+
+    private static final String TOKEN_MESSAGE_PREFIX = "token:";
+    private static final String TOKENS_MESSAGE_PREFIX = "tokens:";
+    private static final String USER_MESSAGE_PREFIX = "user:";
+    private static final int TOKENS_PER_MESSAGE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(TokenNearCache.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TokenRepository tokenRepository;
+
+    private final RTopic invalidationTopic;
+
+    // The tokens created or changed, scored by the time they were recorded
+    private final RScoredSortedSet<String> changedTokens;
+
+    private final Cache<UUID, ResolvedToken> cache;
+
+    private final Cache<UUID, Boolean> unknownTokens;
+
+    private final Counter unknownTokenHits;
+
+    private final Counter bloomFilterRejections;
+
+    private int listenerId = -1;
+
+    private int statusListenerId = -1;
+
+    // Changed whenever the subscription to the invalidation topic is lost or renewed, the messages meanwhile are lost
+    private long subscriptionEpoch = 0;
+
+    // Null until the filter has been built, and whenever the invalidation messages cannot be received
+    private volatile UuidBloomFilter bloomFilter;
+
+    private boolean bloomFilterRebuilding = false;
+
+    private final List<UUID> tokensAddedDuringRebuild = new ArrayList<>();
+
+    public TokenNearCache(ApplicationProperties applicationProperties, TokenRepository tokenRepository, RedissonClient redissonClient,
+                          CacheNameResolver cacheNameResolver, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.tokenRepository = tokenRepository;
+        this.invalidationTopic = redissonClient.getTopic(cacheNameResolver.getCacheName(TOKEN_INVALIDATION_TOPIC), StringCodec.INSTANCE);
+        this.changedTokens = redissonClient.getScoredSortedSet(cacheNameResolver.getCacheName(CHANGED_TOKENS), StringCodec.INSTANCE);
+
+        TokenNearCacheProperties nearCacheProperties = applicationProperties.getTokenNearCache();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(nearCacheProperties.getMaxEntries())
+            .expireAfterWrite(nearCacheProperties.getTimeToLive(), TimeUnit.SECONDS)
+            .build();
+        this.unknownTokens = Caffeine.newBuilder()
+            .maximumSize(nearCacheProperties.getMaxEntries())
+            .expireAfterWrite(nearCacheProperties.getNegativeTimeToLive(), TimeUnit.SECONDS)
+            .build();
+
+        this.unknownTokenHits = meterRegistry.counter("oncokb.token.near.cache.unknown.hits");
+        this.bloomFilterRejections = meterRegistry.counter("oncokb.token.bloom.filter.rejections");
+        meterRegistry.gauge("oncokb.token.bloom.filter.false.positive.rate", this,
+            nearCache -> nearCache.bloomFilter == null ? Double.NaN : nearCache.bloomFilter.getExpectedFalsePositiveRate());
+        meterRegistry.gauge("oncokb.token.bloom.filter.size.bytes", this,
+            nearCache -> nearCache.bloomFilter == null ? 0 : nearCache.bloomFilter.getSizeInBytes());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!applicationProperties.getTokenNearCache().isEnabled()) {
+            return;
+        }
+        try {
+            listenerId = invalidationTopic.addListener(String.class, (channel, message) -> onInvalidation(message));
+            statusListenerId = invalidationTopic.addListener(new StatusListener() {
+                @Override
+                public void onSubscribe(String channel) {
+                    onSubscriptionChange();
+                    // Rebuilt from the database, as the tokens created meanwhile have not been added
+                    CompletableFuture.runAsync(TokenNearCache.this::rebuildBloomFilter);
+                }
+
+                @Override
+                public void onUnsubscribe(String channel) {
+                    onSubscriptionChange();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Without the invalidation messages, the entries are still evicted once they expire
+            log.warn("Failed to subscribe to the token invalidation topic", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (listenerId != -1) {
+            invalidationTopic.removeListener(listenerId);
+        }
+        if (statusListenerId != -1) {
+            invalidationTopic.removeListener(statusListenerId);
+        }
+    }
+
+    /**
+     * @param loader resolves the token when it is not cached, returns null when the token does not exist
+     */
+    public Optional<ResolvedToken> get(UUID token, Function<UUID, ResolvedToken> loader) {
+        if (!applicationProperties.getTokenNearCache().isEnabled()) {
+            return Optional.ofNullable(loader.apply(token));
+        }
+        ResolvedToken resolvedToken = cache.getIfPresent(token);
+        if (resolvedToken != null) {
+            return Optional.of(resolvedToken);
+        }
+        UuidBloomFilter currentBloomFilter = bloomFilter;
+        if (currentBloomFilter != null && !currentBloomFilter.mightContain(token) && !isChangedRecently(token)) {
+            bloomFilterRejections.increment();
+            return Optional.empty();
+        }
+        if (unknownTokens.getIfPresent(token) != null) {
+            unknownTokenHits.increment();
+            return Optional.empty();
+        }
+        resolvedToken = cache.get(token, loader);
+        if (resolvedToken == null) {
+            unknownTokens.put(token, Boolean.TRUE);
+        }
+        return Optional.ofNullable(resolvedToken);
+    }
+
+    /**
+     * Evict the token after it has been created or changed. The token is also added to the bloom filter, in case it is
+     * a new one.
+     */
+    public void evictToken(UUID token) {
+        recordChangedToken(token);
+        evictTokenLocally(token, true);
+        afterCommit(() -> {
+            evictTokenLocally(token, true);
+            publish(TOKEN_MESSAGE_PREFIX + token);
+        });
+    }
+
+    /**
+     * Evict many existing tokens at once, with one invalidation message per thousand tokens. The tokens are not added
+     * to the bloom filter, use {@link #evictToken(UUID)} for the new ones.
+     */
+    public void evictTokens(Collection<UUID> tokens) {
+        tokens.forEach(token -> evictTokenLocally(token, false));
+        afterCommit(() -> {
+            tokens.forEach(token -> evictTokenLocally(token, false));
+            List<UUID> tokenList = new ArrayList<>(tokens);
+            for (int i = 0; i < tokenList.size(); i += TOKENS_PER_MESSAGE) {
+                publish(TOKENS_MESSAGE_PREFIX + tokenList.subList(i, Math.min(i + TOKENS_PER_MESSAGE, tokenList.size())).stream()
+                    .map(UUID::toString)
+                    .collect(Collectors.joining(",")));
+            }
+        });
+    }
+
+    public void evictUser(String login) {
+        evictUserLocally(login);
+        afterCommit(() -> {
+            evictUserLocally(login);
+            publish(USER_MESSAGE_PREFIX + login);
+        });
+    }
+
+    // Until the change is committed, a request may still cache the previous state or remember the token as unknown
+    private void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "PT${application.token-near-cache.bloom-filter-rebuild-interval:3600}S")
+    public void rebuildBloomFilter() {
+        TokenNearCacheProperties nearCacheProperties = applicationProperties.getTokenNearCache();
+        if (!nearCacheProperties.isEnabled() || !nearCacheProperties.isBloomFilterEnabled() || listenerId == -1) {
+            return;
+        }
+        long epoch;
+        synchronized (this) {
+            if (bloomFilterRebuilding) {
+                return;
+            }
+            bloomFilterRebuilding = true;
+            tokensAddedDuringRebuild.clear();
+            epoch = subscriptionEpoch;
+        }
+        Instant start = Instant.now();
+        UuidBloomFilter newBloomFilter;
+        try {
+            List<UUID> tokens = tokenRepository.findAllTokenValuesExpiresAfterDate(start);
+            // Leave room for the tokens created until the next rebuild
+            newBloomFilter = new UuidBloomFilter(Math.max(1024, tokens.size() * 2L), nearCacheProperties.getBloomFilterFalsePositiveRate());
+            tokens.forEach(newBloomFilter::put);
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild the token bloom filter", e);
+            synchronized (this) {
+                bloomFilterRebuilding = false;
+                // The changed tokens are only kept for so long, an older filter could reject them
+                bloomFilter = null;
+            }
+            return;
+        }
+        synchronized (this) {
+            tokensAddedDuringRebuild.forEach(newBloomFilter::put);
+            tokensAddedDuringRebuild.clear();
+            bloomFilterRebuilding = false;
+            // Messages may have been lost during the rebuild, the next subscription rebuilds it again
+            bloomFilter = epoch == subscriptionEpoch ? newBloomFilter : null;
+        }
+        pruneChangedTokens(start.minusSeconds(nearCacheProperties.getBloomFilterRebuildInterval() * 2L));
+        log.debug("Rebuilt the token bloom filter with {} tokens", newBloomFilter.getInsertions());
+    }
+
+    private synchronized void onSubscriptionChange() {
+        subscriptionEpoch++;
+        bloomFilter = null;
+        // Tokens created while the messages were lost may be remembered as unknown
+        unknownTokens.invalidateAll();
+    }
+
+    private void recordChangedToken(UUID token) {
+        TokenNearCacheProperties nearCacheProperties = applicationProperties.getTokenNearCache();
+        if (!nearCacheProperties.isEnabled() || !nearCacheProperties.isBloomFilterEnabled()) {
+            return;
+        }
+        try {
+            changedTokens.add(System.currentTimeMillis(), token.toString());
+        } catch (RuntimeException e) {
+            // The other instances cannot learn about the token, their filters are dropped once they cannot reach redis either
+            log.warn("Failed to record the changed token", e);
+        }
+    }
+
+    // Checked by the tokens missing from the bloom filter, which are then still looked up when redis cannot be reached
+    private boolean isChangedRecently(UUID token) {
+        try {
+            return changedTokens.getScore(token.toString()) != null;
+        } catch (RuntimeException e) {
+            log.warn("Failed to check the changed tokens", e);
+            return true;
+        }
+    }
+
+    private void pruneChangedTokens(Instant before) {
+        try {
+            changedTokens.removeRangeByScore(0, true, before.toEpochMilli(), false);
+        } catch (RuntimeException e) {
+            log.warn("Failed to prune the changed tokens", e);
+        }
+    }
+
+    private void publish(String message) {
+        if (!applicationProperties.getTokenNearCache().isEnabled()) {
+            return;
+        }
+        try {
+            invalidationTopic.publish(message);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish the token invalidation {}", message, e);
+        }
+    }
+
+    private void onInvalidation(String message) {
+        if (message.startsWith(TOKEN_MESSAGE_PREFIX)) {
+            try {
+                evictTokenLocally(UUID.fromString(message.substring(TOKEN_MESSAGE_PREFIX.length())), true);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignore the invalid token invalidation {}", message);
+            }
+        } else if (message.startsWith(TOKENS_MESSAGE_PREFIX)) {
+            for (String token : message.substring(TOKENS_MESSAGE_PREFIX.length()).split(",")) {
+                try {
+                    evictTokenLocally(UUID.fromString(token), false);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Ignore the invalid token invalidation {}", token);
+                }
+            }
+        } else if (message.startsWith(USER_MESSAGE_PREFIX)) {
+            evictUserLocally(message.substring(USER_MESSAGE_PREFIX.length()));
+        }
+    }
+
+    /**
+     * @param changed whether the token may be new, it is then added to the bloom filter unless it already is there
+     */
+    private void evictTokenLocally(UUID token, boolean changed) {
+        if (changed) {
+            synchronized (this) {
+                if (bloomFilter != null && !bloomFilter.mightContain(token)) {
+                    bloomFilter.put(token);
+                }
+                if (bloomFilterRebuilding) {
+                    tokensAddedDuringRebuild.add(token);
+                }
+            }
+        }
+        cache.invalidate(token);
+        unknownTokens.invalidate(token);
+    }
+
+    private void evictUserLocally(String login) {
+        cache.asMap().values().removeIf(resolvedToken -> resolvedToken.getLogin().equals(login));
+    }
+}
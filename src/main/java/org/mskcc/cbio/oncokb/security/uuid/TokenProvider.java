@@ -8,20 +8,17 @@ import org.mskcc.cbio.oncokb.repository.UserRepository;
 import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
 import org.mskcc.cbio.oncokb.security.SecurityUtils;
 import org.mskcc.cbio.oncokb.service.TokenService;
+import org.mskcc.cbio.oncokb.service.TokenUsageMeterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static org.mskcc.cbio.oncokb.config.Constants.HALF_YEAR_IN_SECONDS;
 import static org.mskcc.cbio.oncokb.config.Constants.PUBLIC_WEBSITE_LOGIN;
@@ -48,6 +45,12 @@ public class TokenProvider implements InitializingBean {
     @Autowired
     private TokenStatsRepository tokenStatsRepository;
 
+    @Autowired
+    private TokenNearCache tokenNearCache;
+
+    @Autowired
+    private TokenUsageMeterService tokenUsageMeterService;
+
     public TokenProvider() {
     }
 
@@ -142,33 +145,49 @@ public class TokenProvider implements InitializingBean {
         return null;
     }
 
+    /**
+     * @return the authentication of the token, or null when the token does not exist
+     */
     public Authentication getAuthentication(UUID token) {
-        Optional<Token> tokenOptional = tokenService.findByToken(token);
-
-        Optional<User> user = userRepository.findOneWithAuthoritiesByLogin(tokenOptional.get().getUser().getLogin());
-        Collection<? extends GrantedAuthority> authorities =
-            user.get().getAuthorities().stream()
-                .map(authority -> new SimpleGrantedAuthority(authority.getName()))
-                .collect(Collectors.toList());
+        return resolveToken(token).map(ResolvedToken::getAuthentication).orElse(null);
+    }
 
-        return new UsernamePasswordAuthenticationToken(user.get().getLogin(), token, authorities);
+    /**
+     * Validate the token and get its authentication with a single lookup.
+     *
+     * @return the authentication of the token, or empty when the token is invalid
+     */
+    public Optional<Authentication> resolveAuthentication(UUID tokenValue) {
+        try {
+            return resolveToken(tokenValue)
+                .filter(token -> token.isValid(tokenUsageMeterService.getUsageSinceReconciliation(token.getId())))
+                .map(ResolvedToken::getAuthentication);
+        } catch (Exception e) {
+            log.info("The token is invalid.");
+            log.trace("JWT token compact of handler are invalid trace: {}", e);
+        }
+        return Optional.empty();
     }
 
     public boolean validateToken(UUID tokenValue) {
         try {
-            Optional<Token> token = tokenService.findByToken(tokenValue);
-            if (token.isPresent() && token.get().getExpiration().isAfter(Instant.now())) {
-                if(token.get().getUsageLimit() == null || token.get().getCurrentUsage() < token.get().getUsageLimit()) {
-                    return true;
-                }else{
-                    return false;
-                }
-            }
-            return false;
+            Optional<ResolvedToken> token = resolveToken(tokenValue);
+            return token.isPresent() && token.get().isValid(tokenUsageMeterService.getUsageSinceReconciliation(token.get().getId()));
         } catch (Exception e) {
             log.info("The token is invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
         return false;
     }
+
+    private Optional<ResolvedToken> resolveToken(UUID tokenValue) {
+        return tokenNearCache.get(tokenValue, uuid -> {
+            Optional<Token> token = tokenService.findByToken(uuid);
+            if (!token.isPresent()) {
+                return null;
+            }
+            Optional<User> user = userRepository.findOneWithAuthoritiesByLogin(token.get().getUser().getLogin());
+            return user.map(value -> new ResolvedToken(token.get(), value)).orElse(null);
+        });
+    }
 }
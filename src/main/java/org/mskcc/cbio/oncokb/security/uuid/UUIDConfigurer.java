@@ -1,5 +1,7 @@
 package org.mskcc.cbio.oncokb.security.uuid;
 
+import org.mskcc.cbio.oncokb.security.ratelimit.RateLimitFilter;
+import org.mskcc.cbio.oncokb.security.ratelimit.RateLimiter;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.DefaultSecurityFilterChain;
@@ -9,13 +11,17 @@ public class UUIDConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFil
 
     private TokenProvider tokenProvider;
 
-    public UUIDConfigurer(TokenProvider tokenProvider) {
+    private RateLimiter rateLimiter;
+
+    public UUIDConfigurer(TokenProvider tokenProvider, RateLimiter rateLimiter) {
         this.tokenProvider = tokenProvider;
+        this.rateLimiter = rateLimiter;
     }
 
     @Override
     public void configure(HttpSecurity http) throws Exception {
         UUIDFilter customFilter = new UUIDFilter(tokenProvider);
         http.addFilterBefore(customFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(new RateLimitFilter(rateLimiter), UUIDFilter.class);
     }
 }
@@ -11,6 +11,7 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -32,10 +33,12 @@ public class UUIDFilter extends GenericFilterBean {
         throws IOException, ServletException {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         UUID uuid = resolveToken(httpServletRequest);
-        if (uuid != null && this.tokenProvider.validateToken(uuid)) {
-            Authentication authentication = this.tokenProvider.getAuthentication(uuid);
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-//            this.tokenProvider.addAccessRecord(uuid, servletRequest.getRemoteAddr());
+        if (uuid != null) {
+            Optional<Authentication> authentication = this.tokenProvider.resolveAuthentication(uuid);
+            if (authentication.isPresent()) {
+                SecurityContextHolder.getContext().setAuthentication(authentication.get());
+//                this.tokenProvider.addAccessRecord(uuid, servletRequest.getRemoteAddr());
+            }
         }
         filterChain.doFilter(servletRequest, servletResponse);
     }
@@ -0,0 +1,202 @@
+package org.mskcc.cbio.oncokb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.mskcc.cbio.oncokb.config.application.ApiProxyCacheProperties;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the responses from oncokb core for the GET requests to the whitelisted paths.
+ * <p>
+ * Entries are kept in memory, and optionally in redis so they are shared between the instances. The data version
+ * reported by core is part of the cache key, a new data release therefore never serves a response of the previous one.
+ */
+@Service
+public class ApiProxyCacheService {
+    public static final String API_PROXY_RESPONSES_CACHE = "apiProxyResponses";
+
+    private static final String INFO_PATH = "/api/v1/info";
+
+    private final Logger log = LoggerFactory.getLogger(ApiProxyCacheService.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ApiProxyService apiProxyService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, String> localCache;
+
+    private final RMapCache<String, String> redisCache;
+
+    private final Counter localHits;
+
+    private final Counter redisHits;
+
+    private final Counter misses;
+
+    private volatile String dataVersion;
+
+    public ApiProxyCacheService(ApplicationProperties applicationProperties, ApiProxyService apiProxyService, ObjectMapper objectMapper,
+                                RedissonClient redissonClient, CacheNameResolver cacheNameResolver, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.apiProxyService = apiProxyService;
+        this.objectMapper = objectMapper;
+
+        ApiProxyCacheProperties cacheProperties = applicationProperties.getApiProxy().getCache();
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(cacheProperties.getMaxEntries())
+            .expireAfterWrite(cacheProperties.getTimeToLive(), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, API_PROXY_RESPONSES_CACHE);
+        this.redisCache = cacheProperties.isEnabled() && cacheProperties.isRedisEnabled()
+            ? redissonClient.getMapCache(cacheNameResolver.getCacheName(API_PROXY_RESPONSES_CACHE))
+            : null;
+
+        this.localHits = meterRegistry.counter("oncokb.api.proxy.cache.requests", "result", "hit", "tier", "memory");
+        this.redisHits = meterRegistry.counter("oncokb.api.proxy.cache.requests", "result", "hit", "tier", "redis");
+        this.misses = meterRegistry.counter("oncokb.api.proxy.cache.requests", "result", "miss", "tier", "all");
+    }
+
+    /**
+     * @return the cache key of the request, or empty when the response of the request should not be cached
+     */
+    public Optional<String> getCacheKey(HttpMethod method, String requestUri, String queryString) {
+        ApiProxyCacheProperties cacheProperties = applicationProperties.getApiProxy().getCache();
+        String currentDataVersion = dataVersion;
+        if (!cacheProperties.isEnabled() || currentDataVersion == null || !HttpMethod.GET.equals(method)
+            || cacheProperties.getPaths().stream().noneMatch(requestUri::startsWith)) {
+            return Optional.empty();
+        }
+        return Optional.of(currentDataVersion + " " + normalise(requestUri, queryString));
+    }
+
+    public Optional<String> get(String cacheKey) {
+        String body = localCache.getIfPresent(cacheKey);
+        if (body != null) {
+            localHits.increment();
+            return Optional.of(body);
+        }
+        if (redisCache != null) {
+            try {
+                body = redisCache.get(cacheKey);
+            } catch (RuntimeException e) {
+                log.warn("Failed to read the api proxy cache from redis", e);
+            }
+            if (body != null) {
+                redisHits.increment();
+                localCache.put(cacheKey, body);
+                return Optional.of(body);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Cache a successful response from core. The responses of {@code /api/v1/info} are also used to notice a new data
+     * version early.
+     */
+    public void put(String cacheKey, String requestUri, String body) {
+        if (body == null) {
+            return;
+        }
+        if (requestUri.equals(INFO_PATH)) {
+            updateDataVersion(body);
+        }
+        // The data version has changed while the request was in flight
+        if (!cacheKey.startsWith(dataVersion + " ")) {
+            return;
+        }
+        if (body.length() > applicationProperties.getApiProxy().getCache().getMaxEntrySize()) {
+            return;
+        }
+        localCache.put(cacheKey, body);
+        if (redisCache != null) {
+            try {
+                redisCache.fastPutAsync(cacheKey, body, applicationProperties.getApiProxy().getCache().getTimeToLive(), TimeUnit.SECONDS);
+            } catch (RuntimeException e) {
+                log.warn("Failed to write the api proxy cache to redis", e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT${application.api-proxy.cache.data-version-check-interval:60}S")
+    public void checkDataVersion() {
+        if (!applicationProperties.getApiProxy().getCache().isEnabled()) {
+            return;
+        }
+        try {
+            ResponseEntity<String> info = apiProxyService.exchange(apiProxyService.prepareURI(INFO_PATH), HttpMethod.GET, null, null, String.class);
+            updateDataVersion(info.getBody());
+        } catch (Exception e) {
+            log.warn("Failed to check the data version of oncokb core: {}", e.getMessage());
+        }
+    }
+
+    public void clear() {
+        localCache.invalidateAll();
+        if (redisCache != null) {
+            try {
+                redisCache.clear();
+            } catch (RuntimeException e) {
+                log.warn("Failed to clear the api proxy cache in redis", e);
+            }
+        }
+    }
+
+    private synchronized void updateDataVersion(String info) {
+        String newDataVersion;
+        try {
+            JsonNode version = objectMapper.readTree(info).path("dataVersion");
+            newDataVersion = version.path("version").asText() + "/" + version.path("date").asText();
+        } catch (IOException | RuntimeException e) {
+            newDataVersion = null;
+        }
+        if (newDataVersion == null || newDataVersion.equals("/")) {
+            log.warn("Failed to read the data version from the oncokb core info");
+            return;
+        }
+        if (Objects.equals(newDataVersion, dataVersion)) {
+            return;
+        }
+        if (dataVersion != null) {
+            log.info("The oncokb core data version changed from {} to {}, clear the api proxy cache", dataVersion, newDataVersion);
+            clear();
+        }
+        dataVersion = newDataVersion;
+    }
+
+    // The order of the query parameters does not change the response
+    private String normalise(String requestUri, String queryString) {
+        if (queryString == null || queryString.isEmpty()) {
+            return requestUri;
+        }
+        return requestUri + "?" + Arrays.stream(queryString.split("&"))
+            .filter(parameter -> !parameter.isEmpty())
+            .sorted()
+            .collect(Collectors.joining("&"));
+    }
+}
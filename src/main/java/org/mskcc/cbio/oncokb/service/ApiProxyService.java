@@ -1,17 +1,52 @@
 package org.mskcc.cbio.oncokb.service;
 
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
 import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.util.JsonArrayElementCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Service for proxying oncokb core requests
@@ -25,6 +60,33 @@ public class ApiProxyService {
     @Autowired
     private ApplicationProperties applicationProperties;
 
+    @Autowired
+    private RestTemplate apiProxyRestTemplate;
+
+    @Autowired
+    private RestTemplate apiProxyStreamingRestTemplate;
+
+    @Autowired
+    private CloseableHttpClient apiProxyHttpClient;
+
+    // Only there in the async mode
+    @Autowired(required = false)
+    private CloseableHttpAsyncClient apiProxyAsyncHttpClient;
+
+    private Semaphore inFlightRequests;
+
+    private final ConcurrentMap<String, CompletableFuture<ResponseEntity<String>>> inFlightGetRequests = new ConcurrentHashMap<>();
+
+    // Headers that only make sense for a single connection, or that are managed by this application itself
+    private static final Set<String> EXCLUDED_RESPONSE_HEADERS = new HashSet<>(Arrays.asList(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade"
+    ));
+
+    @PostConstruct
+    public void init() {
+        inFlightRequests = new Semaphore(applicationProperties.getApiProxy().getMaxInFlightRequests());
+    }
+
     public URI prepareURI(HttpServletRequest request) throws URISyntaxException {
         String queryString = request.getQueryString();
         return new URI(applicationProperties.getApiProxyUrl() + request.getRequestURI() + (queryString == null ? "" : "?" + queryString));
@@ -45,10 +107,318 @@ public class ApiProxyService {
     }
 
     public ResponseEntity<String> exchangeRequest(String body, HttpMethod method, String contentType, String apiRequest) throws URISyntaxException {
-        URI uri = prepareURI(apiRequest);
+        return exchange(prepareURI(apiRequest), method, body, contentType, String.class);
+    }
 
+    public <T> ResponseEntity<T> exchange(URI uri, HttpMethod method, String body, String contentType, Class<T> responseType) {
         HttpHeaders httpHeaders = prepareHttpHeaders(contentType);
-        RestTemplate restTemplate = new RestTemplate();
-        return restTemplate.exchange(uri, method, new HttpEntity<>(body, httpHeaders), String.class);
+        return apiProxyRestTemplate.exchange(uri, method, new HttpEntity<>(body, httpHeaders), responseType);
+    }
+
+    /**
+     * Same as {@link #exchange(URI, HttpMethod, String, String, Class)}, but identical GET requests sent while one of
+     * them is waiting on core share its response instead of calling core again.
+     */
+    public ResponseEntity<String> coalescedExchange(URI uri, HttpMethod method, String body, String contentType) {
+        if (!isCoalesced(method, body)) {
+            return exchange(uri, method, body, contentType, String.class);
+        }
+        CompletableFuture<ResponseEntity<String>> response = coalesce(uri, method, contentType,
+            () -> CompletableFuture.completedFuture(exchange(uri, method, null, contentType, String.class)));
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            // Rethrow the original exception, e.g. a HttpStatusCodeException, so it is handled as without coalescing
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Send the request to oncokb core without blocking the calling thread. The returned future completes on one of
+     * the io threads of the async client, with the status, headers and body from core.
+     * <p>
+     * When the number of requests waiting on core reaches the configured limit, the future completes right away with
+     * 503 so a slow core cannot pile up an unbounded number of requests. Identical GET requests in flight share a
+     * single request to core and count once against the limit.
+     */
+    public CompletableFuture<ResponseEntity<String>> asyncExchange(URI uri, HttpMethod method, String body, String contentType) {
+        if (!isCoalesced(method, body)) {
+            return sendAsyncExchange(uri, method, body, contentType);
+        }
+        // Cancelling the copy given to one caller must not cancel the request shared with the others
+        return coalesce(uri, method, contentType, () -> sendAsyncExchange(uri, method, null, contentType))
+            .thenApply(Function.identity());
+    }
+
+    private boolean isCoalesced(HttpMethod method, String body) {
+        return applicationProperties.getApiProxy().isCoalesceRequests() && HttpMethod.GET.equals(method) && body == null;
+    }
+
+    /**
+     * Share the response of the request already in flight with the same method, uri and forwarded headers, or send a
+     * new one. The request is removed from the in flight requests as soon as core answers.
+     */
+    private CompletableFuture<ResponseEntity<String>> coalesce(URI uri, HttpMethod method, String contentType, Supplier<CompletableFuture<ResponseEntity<String>>> exchange) {
+        // The content type is the only request header forwarded to core
+        String key = method + " " + uri + " " + contentType;
+        CompletableFuture<ResponseEntity<String>> shared = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<String>> inFlight = inFlightGetRequests.putIfAbsent(key, shared);
+        if (inFlight != null) {
+            log.debug("Share the response of the request in flight to {}", uri);
+            return inFlight;
+        }
+        try {
+            exchange.get().whenComplete((response, throwable) -> {
+                inFlightGetRequests.remove(key, shared);
+                if (throwable == null) {
+                    shared.complete(response);
+                } else {
+                    shared.completeExceptionally(throwable);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightGetRequests.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared;
+    }
+
+    private CompletableFuture<ResponseEntity<String>> sendAsyncExchange(URI uri, HttpMethod method, String body, String contentType) {
+        if (!inFlightRequests.tryAcquire()) {
+            log.warn("Reject the request to {}, {} requests are in flight already", uri.getPath(), applicationProperties.getApiProxy().getMaxInFlightRequests());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+
+        RequestBuilder requestBuilder = RequestBuilder.create(method.name()).setUri(uri);
+        if (body != null) {
+            ContentType entityContentType = contentType == null ? ContentType.APPLICATION_JSON : ContentType.parse(contentType);
+            if (entityContentType.getCharset() == null) {
+                entityContentType = entityContentType.withCharset(StandardCharsets.UTF_8);
+            }
+            requestBuilder.setEntity(new StringEntity(body, entityContentType));
+        }
+
+        CompletableFuture<ResponseEntity<String>> result = new CompletableFuture<>();
+        Future<HttpResponse> coreRequest;
+        try {
+            coreRequest = apiProxyAsyncHttpClient.execute(requestBuilder.build(), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse coreResponse) {
+                    try {
+                        result.complete(toResponseEntity(coreResponse));
+                    } catch (IOException | RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    result.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    result.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightRequests.release();
+            throw e;
+        }
+        result.whenComplete((response, throwable) -> {
+            inFlightRequests.release();
+            // The caller gave up, e.g. the servlet request timed out, the connection to core is not needed anymore
+            if (result.isCancelled()) {
+                coreRequest.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private ResponseEntity<String> toResponseEntity(HttpResponse coreResponse) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        for (Header header : coreResponse.getAllHeaders()) {
+            if (isForwardedResponseHeader(header.getName())) {
+                headers.add(header.getName(), header.getValue());
+            }
+        }
+        // The body is re-encoded by the servlet response
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        String body = coreResponse.getEntity() == null ? null : EntityUtils.toString(coreResponse.getEntity(), StandardCharsets.UTF_8);
+        return ResponseEntity.status(coreResponse.getStatusLine().getStatusCode()).headers(headers).body(body);
+    }
+
+    public String readRequestBody(HttpServletRequest request) throws IOException {
+        ServletServerHttpRequest inputMessage = new ServletServerHttpRequest(request);
+        MediaType contentType = inputMessage.getHeaders().getContentType();
+        Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        String body = StreamUtils.copyToString(inputMessage.getBody(), charset);
+        return body.isEmpty() ? null : body;
+    }
+
+    /**
+     * Proxy the request without holding the bodies in memory. The request body is copied to oncokb core and the
+     * response is copied back to the client through a fixed-size buffer. The status and headers from core are
+     * forwarded as they are.
+     *
+     * @param bodyCounter when not null, every chunk of the request body is also fed to the counter
+     */
+    public void streamExchange(URI uri, HttpMethod method, HttpServletRequest request, HttpServletResponse response, JsonArrayElementCounter bodyCounter) {
+        apiProxyStreamingRestTemplate.execute(uri, method, clientRequest -> {
+            if (request.getContentType() != null) {
+                clientRequest.getHeaders().set(HttpHeaders.CONTENT_TYPE, request.getContentType());
+            }
+            if (request.getContentLengthLong() >= 0) {
+                clientRequest.getHeaders().setContentLength(request.getContentLengthLong());
+            }
+            ((StreamingHttpOutputMessage) clientRequest).setBody(outputStream -> copy(request.getInputStream(), outputStream, bodyCounter, -1));
+        }, clientResponse -> {
+            response.setStatus(clientResponse.getRawStatusCode());
+            for (Map.Entry<String, List<String>> header : clientResponse.getHeaders().entrySet()) {
+                for (int i = 0; i < header.getValue().size(); i++) {
+                    forwardResponseHeader(response, header.getKey(), header.getValue().get(i), i == 0);
+                }
+            }
+            copy(clientResponse.getBody(), response.getOutputStream(), null, -1);
+            response.flushBuffer();
+            return null;
+        });
+    }
+
+    /**
+     * Stream a file download from oncokb core. Single range requests are forwarded to core so an interrupted
+     * download can be resumed. When core sends the whole file anyway, the requested range is cut out here.
+     */
+    public void streamDownload(URI uri, HttpMethod method, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRangeHeader = request.getHeader(HttpHeaders.IF_RANGE);
+
+        RequestBuilder requestBuilder = RequestBuilder.create(method.name()).setUri(uri);
+        if (rangeHeader != null) {
+            requestBuilder.setHeader(HttpHeaders.RANGE, rangeHeader);
+        }
+        if (ifRangeHeader != null) {
+            requestBuilder.setHeader(HttpHeaders.IF_RANGE, ifRangeHeader);
+        }
+
+        // The http client is used directly so the connection is dropped instead of drained when the client goes away
+        try (CloseableHttpResponse coreResponse = apiProxyHttpClient.execute(requestBuilder.build())) {
+            int status = coreResponse.getStatusLine().getStatusCode();
+            org.apache.http.HttpEntity entity = coreResponse.getEntity();
+            long contentLength = entity == null ? -1 : entity.getContentLength();
+
+            response.setStatus(status);
+            Set<String> forwardedHeaders = new HashSet<>();
+            for (Header header : coreResponse.getAllHeaders()) {
+                forwardResponseHeader(response, header.getName(), header.getValue(), forwardedHeaders.add(header.getName().toLowerCase()));
+            }
+            if (entity == null) {
+                return;
+            }
+
+            boolean rangeSupported = status == HttpStatus.OK.value() && contentLength >= 0;
+            Optional<HttpRange> range = rangeSupported ? getRequestedRange(rangeHeader, ifRangeHeader, coreResponse) : Optional.empty();
+            if (rangeSupported) {
+                response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            }
+
+            InputStream body = entity.getContent();
+            if (!range.isPresent()) {
+                copy(body, response.getOutputStream(), null, -1);
+                response.flushBuffer();
+                return;
+            }
+
+            long start = range.get().getRangeStart(contentLength);
+            if (start >= contentLength) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength);
+                response.setContentLength(0);
+                return;
+            }
+            long end = range.get().getRangeEnd(contentLength);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + contentLength);
+            response.setContentLengthLong(end - start + 1);
+            skip(body, start);
+            copy(body, response.getOutputStream(), null, end - start + 1);
+            response.flushBuffer();
+        }
+    }
+
+    private Optional<HttpRange> getRequestedRange(String rangeHeader, String ifRangeHeader, CloseableHttpResponse coreResponse) {
+        if (rangeHeader == null) {
+            return Optional.empty();
+        }
+        // The range only applies when the file has not changed since the client got the first part of it
+        if (ifRangeHeader != null && !ifRangeHeader.equals(getHeaderValue(coreResponse, HttpHeaders.ETAG))
+            && !ifRangeHeader.equals(getHeaderValue(coreResponse, HttpHeaders.LAST_MODIFIED))) {
+            return Optional.empty();
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            // Multiple ranges are not supported, the whole file is sent instead
+            return ranges.size() == 1 ? Optional.of(ranges.get(0)) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignore the invalid range header {}", rangeHeader);
+            return Optional.empty();
+        }
+    }
+
+    private String getHeaderValue(CloseableHttpResponse coreResponse, String name) {
+        Header header = coreResponse.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private boolean isForwardedResponseHeader(String name) {
+        String lowerCaseName = name.toLowerCase();
+        return !EXCLUDED_RESPONSE_HEADERS.contains(lowerCaseName) && !lowerCaseName.startsWith("access-control-");
+    }
+
+    private void forwardResponseHeader(HttpServletResponse response, String name, String value, boolean replace) {
+        if (!isForwardedResponseHeader(name)) {
+            return;
+        }
+        if (replace) {
+            response.setHeader(name, value);
+        } else {
+            response.addHeader(name, value);
+        }
+    }
+
+    private void skip(InputStream in, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("The response from core ended before the requested range");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * @param limit the maximum number of bytes to copy, -1 to copy everything
+     */
+    private long copy(InputStream in, OutputStream out, JsonArrayElementCounter counter, long limit) throws IOException {
+        byte[] buffer = new byte[applicationProperties.getApiProxy().getBufferSize()];
+        long total = 0;
+        int read;
+        while ((limit < 0 || total < limit)
+            && (read = in.read(buffer, 0, limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - total))) != -1) {
+            if (counter != null) {
+                counter.feed(buffer, 0, read);
+            }
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        out.flush();
+        return total;
     }
 }
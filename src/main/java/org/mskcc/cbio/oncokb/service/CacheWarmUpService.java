@@ -0,0 +1,134 @@
+package org.mskcc.cbio.oncokb.service;
+
+import org.mskcc.cbio.oncokb.config.Constants;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.CacheWarmUpProperties;
+import org.mskcc.cbio.oncokb.querydomain.RecentTokenAccess;
+import org.mskcc.cbio.oncokb.repository.TokenStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the tokens and the users active recently into the caches once the application has started, so the first
+ * requests after a deploy do not all go to the database.
+ * <p>
+ * The warm-up runs in the background. The application only reports it is ready to serve once the warm-up has completed
+ * or timed out, see {@code CacheWarmUpHealthIndicator}.
+ */
+@Service
+public class CacheWarmUpService {
+    private final Logger log = LoggerFactory.getLogger(CacheWarmUpService.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TokenStatsRepository tokenStatsRepository;
+
+    private final TokenService tokenService;
+
+    private final UserService userService;
+
+    private volatile boolean done = false;
+
+    public CacheWarmUpService(ApplicationProperties applicationProperties, TokenStatsRepository tokenStatsRepository, TokenService tokenService,
+                              UserService userService) {
+        this.applicationProperties = applicationProperties;
+        this.tokenStatsRepository = tokenStatsRepository;
+        this.tokenService = tokenService;
+        this.userService = userService;
+    }
+
+    /**
+     * @return true once the warm-up has completed, failed or timed out, or when it is disabled
+     */
+    public boolean isDone() {
+        return done || !applicationProperties.getCacheWarmUp().isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!applicationProperties.getCacheWarmUp().isEnabled()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp();
+            } catch (Exception e) {
+                log.warn("Failed to warm up the caches", e);
+            } finally {
+                done = true;
+            }
+        }, "cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() throws InterruptedException {
+        CacheWarmUpProperties warmUpProperties = applicationProperties.getCacheWarmUp();
+        long start = System.currentTimeMillis();
+
+        List<RecentTokenAccess> accesses = tokenStatsRepository.findRecentTokenAccesses(
+            Instant.now().minusSeconds(warmUpProperties.getActivePeriod()), PageRequest.of(0, warmUpProperties.getMaxTokens()));
+        List<List<RecentTokenAccess>> batches = new ArrayList<>();
+        for (int i = 0; i < accesses.size(); i += warmUpProperties.getBatchSize()) {
+            batches.add(accesses.subList(i, Math.min(i + warmUpProperties.getBatchSize(), accesses.size())));
+        }
+
+        AtomicInteger loaded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(warmUpProperties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-up-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            futures.add(CompletableFuture.runAsync(this::warmUpPublicWebsiteToken, executor));
+            batches.forEach(batch -> futures.add(CompletableFuture.runAsync(() -> warmUp(batch, loaded), executor)));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(warmUpProperties.getTimeout(), TimeUnit.SECONDS);
+            log.info("Warmed up the caches with {} recently used tokens in {} ms", loaded.get(), System.currentTimeMillis() - start);
+        } catch (TimeoutException e) {
+            log.warn("The cache warm-up timed out after loading {} of {} recently used tokens", loaded.get(), accesses.size());
+        } catch (ExecutionException e) {
+            log.warn("Failed to warm up the caches", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void warmUp(List<RecentTokenAccess> batch, AtomicInteger loaded) {
+        for (RecentTokenAccess access : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                // The same lookups as the authentication and the token usage recording
+                tokenService.findByToken(access.getToken());
+                userService.getUserWithAuthoritiesByLogin(access.getLogin())
+                    .ifPresent(tokenService::findValidByUser);
+                loaded.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.debug("Failed to warm up the caches for the user {}", access.getLogin(), e);
+            }
+        }
+    }
+
+    // Read only, unlike TokenProvider.getPubWebToken the token is not renewed here when it has expired
+    private void warmUpPublicWebsiteToken() {
+        tokenService.findPublicWebsiteToken().ifPresent(token -> tokenService.findByToken(token.getToken()));
+        userService.getUserWithAuthoritiesByLogin(Constants.PUBLIC_WEBSITE_LOGIN).ifPresent(tokenService::findValidByUser);
+    }
+}
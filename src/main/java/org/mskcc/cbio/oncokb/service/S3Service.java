@@ -8,6 +8,8 @@ import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 
 import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
@@ -42,6 +44,19 @@ public class S3Service {
         s3client.putObject(bucket, objectPath, file);
     }
 
+    /**
+     * Save an object to aws s3 with a content encoding, e.g. gzip
+     * @param bucket s3 bucket name
+     * @param objectPath the path where the object will be saved
+     * @param file the object
+     * @param contentEncoding the content encoding of the file
+     */
+    public void saveObject(String bucket, String objectPath, File file, String contentEncoding){
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentEncoding(contentEncoding);
+        s3client.putObject(new PutObjectRequest(bucket, objectPath, file).withMetadata(metadata));
+    }
+
     /**
      * Get an object from aws s3
      * @param bucket s3 bucket name
@@ -55,6 +55,15 @@ public interface TokenService {
     void increaseTokenUsage(Long id, int increment);
 
     List<Token> findAllExpiresBeforeDate(Instant date);
+
+    /**
+     * Set the current usage of every token to the sum of its token stats accessed before the given time.
+     *
+     * @param before the access time the token stats are counted until
+     * @return the number of tokens updated
+     */
+    int updateCurrentUsageFromTokenStats(Instant before);
+
     /**
      * Delete the "id" token.
      *
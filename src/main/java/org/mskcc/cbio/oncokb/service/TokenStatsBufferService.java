@@ -0,0 +1,258 @@
+package org.mskcc.cbio.oncokb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.TokenStatsBufferProperties;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.domain.TokenStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for {@link TokenStats}.
+ * <p>
+ * The proxied requests only add their usage to an in-memory counter per token, resource, ip and minute. A single
+ * background thread turns the counters of the past minutes into one token stats row each and inserts them in JDBC
+ * batches. Usage of new keys is dropped once the number of counters reaches the capacity, and all the counters are
+ * written when the application shuts down.
+ */
+@Service
+public class TokenStatsBufferService {
+    private static final String INSERT_TOKEN_STATS = "INSERT INTO token_stats (access_ip, resource, access_time, usage_count, token_id) VALUES (?, ?, ?, ?, ?)";
+
+    private final Logger log = LoggerFactory.getLogger(TokenStatsBufferService.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TokenStatsService tokenStatsService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<UsageKey, UsageCounter> counters = new ConcurrentHashMap<>();
+
+    private final Counter dropped;
+
+    private final Counter written;
+
+    private final Timer flushLatency;
+
+    private ScheduledExecutorService flushExecutor;
+
+    public TokenStatsBufferService(ApplicationProperties applicationProperties, TokenStatsService tokenStatsService, JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.tokenStatsService = tokenStatsService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        meterRegistry.gauge("oncokb.token.stats.buffer.size", counters, Map::size);
+        this.dropped = meterRegistry.counter("oncokb.token.stats.buffer.dropped");
+        this.written = meterRegistry.counter("oncokb.token.stats.buffer.written");
+        this.flushLatency = meterRegistry.timer("oncokb.token.stats.buffer.flush");
+    }
+
+    @PostConstruct
+    public void init() {
+        TokenStatsBufferProperties bufferProperties = applicationProperties.getTokenStatsBuffer();
+        if (!bufferProperties.isEnabled()) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-stats-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushSafely, bufferProperties.getFlushInterval(), bufferProperties.getFlushInterval(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Add the usage of the token stats to the counter of its minute, or save them right away when the buffer is
+     * disabled.
+     *
+     * @return false when the buffer is full and the token stats have been dropped
+     */
+    public boolean add(TokenStats tokenStats) {
+        if (flushExecutor == null) {
+            tokenStatsService.save(tokenStats);
+            return true;
+        }
+        int capacity = applicationProperties.getTokenStatsBuffer().getCapacity();
+        // Counted while the entry is locked, so the usage either lands in a counter the flush has not removed yet or in a new one
+        UsageCounter counter = counters.compute(new UsageKey(tokenStats), (key, current) -> {
+            if (current == null && counters.size() >= capacity) {
+                return null;
+            }
+            UsageCounter updated = current == null ? new UsageCounter(tokenStats.getToken()) : current;
+            updated.usageCount += tokenStats.getUsageCount();
+            return updated;
+        });
+        if (counter == null) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (flushExecutor == null) {
+            return;
+        }
+        flushExecutor.shutdown();
+        if (!flushExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("The token stats flush did not finish in time");
+            return;
+        }
+        // The flush thread is gone and the requests have stopped, the counters of the current minute are written too
+        flushSafely(Long.MAX_VALUE);
+    }
+
+    private void flushSafely() {
+        // The counters of the previous minute are left for one more minute, a request that started then may still add to them
+        flushSafely(currentMinute() - 1);
+    }
+
+    private void flushSafely(long beforeMinute) {
+        try {
+            flush(beforeMinute);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush the token stats", e);
+        }
+    }
+
+    private void flush(long beforeMinute) {
+        List<TokenStats> rows = new ArrayList<>();
+        for (UsageKey key : counters.keySet()) {
+            if (key.minute < beforeMinute) {
+                UsageCounter counter = counters.remove(key);
+                if (counter != null && counter.usageCount > 0) {
+                    rows.add(key.toTokenStats(counter));
+                }
+            }
+        }
+
+        int batchSize = applicationProperties.getTokenStatsBuffer().getBatchSize();
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            List<TokenStats> batch = rows.subList(i, Math.min(i + batchSize, rows.size()));
+            try {
+                flushLatency.record(() -> insert(batch));
+                written.increment(batch.size());
+            } catch (RuntimeException e) {
+                // The rows are not retried, a failing database would otherwise keep the buffer full
+                dropped.increment(rows.size() - i);
+                throw e;
+            }
+        }
+    }
+
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private void insert(List<TokenStats> batch) {
+        // Same as hibernate.jdbc.time_zone
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_TOKEN_STATS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TokenStats tokenStats = batch.get(i);
+                ps.setString(1, tokenStats.getAccessIp());
+                ps.setString(2, tokenStats.getResource());
+                ps.setTimestamp(3, Timestamp.from(tokenStats.getAccessTime()), utc);
+                ps.setInt(4, tokenStats.getUsageCount());
+                if (tokenStats.getToken() == null) {
+                    ps.setNull(5, Types.BIGINT);
+                } else {
+                    ps.setLong(5, tokenStats.getToken().getId());
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        }));
+    }
+
+    private static final class UsageKey {
+        private final Long tokenId;
+        private final String resource;
+        private final String accessIp;
+        private final long minute;
+
+        private UsageKey(TokenStats tokenStats) {
+            this.tokenId = tokenStats.getToken() == null ? null : tokenStats.getToken().getId();
+            this.resource = tokenStats.getResource();
+            this.accessIp = tokenStats.getAccessIp();
+            this.minute = TimeUnit.SECONDS.toMinutes(tokenStats.getAccessTime().getEpochSecond());
+        }
+
+        private TokenStats toTokenStats(UsageCounter counter) {
+            TokenStats tokenStats = new TokenStats();
+            tokenStats.setToken(counter.token);
+            tokenStats.setResource(resource);
+            tokenStats.setAccessIp(accessIp);
+            tokenStats.setAccessTime(Instant.ofEpochSecond(TimeUnit.MINUTES.toSeconds(minute)));
+            tokenStats.setUsageCount((int) counter.usageCount);
+            return tokenStats;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UsageKey)) {
+                return false;
+            }
+            UsageKey usageKey = (UsageKey) o;
+            return minute == usageKey.minute &&
+                Objects.equals(tokenId, usageKey.tokenId) &&
+                Objects.equals(resource, usageKey.resource) &&
+                Objects.equals(accessIp, usageKey.accessIp);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tokenId, resource, accessIp, minute);
+        }
+    }
+
+    // Only changed and removed while its entry is locked
+    private static final class UsageCounter {
+        private final Token token;
+        private long usageCount;
+
+        private UsageCounter(Token token) {
+            this.token = token;
+        }
+    }
+}
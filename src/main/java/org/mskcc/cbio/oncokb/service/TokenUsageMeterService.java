@@ -0,0 +1,140 @@
+package org.mskcc.cbio.oncokb.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchOptions.ExecutionMode;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Real time token usage, so the token usage limits are enforced without waiting for the update-token-stats cron job.
+ * <p>
+ * The usage since the last reconciliation is counted per token in redis, shared by all the instances. Each instance
+ * counts locally first and adds its counts to redis in a single batch every flush interval. The total usage of a token
+ * is then its current usage in the database plus the usage counted here, read without any network hop.
+ * <p>
+ * The cron job sets the current usage of the tokens from the token stats and then resets the counters here. Usage
+ * between the two is only counted again at the next cron job run, the enforcement errs on the side of the users.
+ */
+@Service
+public class TokenUsageMeterService {
+    public static final String TOKEN_USAGE_COUNTER = "tokenUsage";
+
+    private final Logger log = LoggerFactory.getLogger(TokenUsageMeterService.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final RedissonClient redissonClient;
+
+    private final String counterPrefix;
+
+    // Usage counted on this instance, not added to redis yet. Entries are never removed so no increment can be lost
+    private final ConcurrentMap<Long, LongAdder> pendingUsage = new ConcurrentHashMap<>();
+
+    // Usage in redis when this instance last flushed, by all the instances
+    private final ConcurrentMap<Long, Long> flushedUsage = new ConcurrentHashMap<>();
+
+    private final Timer flushLatency;
+
+    public TokenUsageMeterService(ApplicationProperties applicationProperties, RedissonClient redissonClient, CacheNameResolver cacheNameResolver,
+                                  MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.redissonClient = redissonClient;
+        this.counterPrefix = cacheNameResolver.getCacheName(TOKEN_USAGE_COUNTER) + ":";
+        this.flushLatency = meterRegistry.timer("oncokb.token.usage.meter.flush");
+        meterRegistry.gauge("oncokb.token.usage.meter.tokens", flushedUsage, Map::size);
+    }
+
+    public void record(Token token, int usageCount) {
+        if (!applicationProperties.getTokenUsageMeter().isEnabled() || token.getId() == null) {
+            return;
+        }
+        pendingUsage.computeIfAbsent(token.getId(), id -> new LongAdder()).add(usageCount);
+    }
+
+    /**
+     * @return the usage of the token since the last reconciliation, as far as this instance knows
+     */
+    public long getUsageSinceReconciliation(Long tokenId) {
+        if (!applicationProperties.getTokenUsageMeter().isEnabled() || tokenId == null) {
+            return 0;
+        }
+        LongAdder pending = pendingUsage.get(tokenId);
+        return flushedUsage.getOrDefault(tokenId, 0L) + (pending == null ? 0 : pending.sum());
+    }
+
+    @Scheduled(fixedDelayString = "PT${application.token-usage-meter.flush-interval:5}S")
+    public void flush() {
+        if (!applicationProperties.getTokenUsageMeter().isEnabled() || (pendingUsage.isEmpty() && flushedUsage.isEmpty())) {
+            return;
+        }
+        Map<Long, Long> increments = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : pendingUsage.entrySet()) {
+            long increment = entry.getValue().sumThenReset();
+            if (increment > 0) {
+                increments.put(entry.getKey(), increment);
+            }
+        }
+
+        // The counters of the other tokens known here are read in the same batch, to see the usage on other instances.
+        // The batch runs in a MULTI/EXEC transaction, so on failure none of the increments were added and all are retried
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults().executionMode(ExecutionMode.IN_MEMORY_ATOMIC));
+        Map<Long, RFuture<Long>> responses = new HashMap<>();
+        for (Long tokenId : flushedUsage.keySet()) {
+            if (!increments.containsKey(tokenId)) {
+                responses.put(tokenId, batch.getAtomicLong(counterPrefix + tokenId).getAsync());
+            }
+        }
+        increments.forEach((tokenId, increment) -> responses.put(tokenId, batch.getAtomicLong(counterPrefix + tokenId).addAndGetAsync(increment)));
+
+        try {
+            flushLatency.record(() -> batch.execute());
+        } catch (RuntimeException e) {
+            // Put the increments back, they are added to redis at the next flush
+            increments.forEach((tokenId, increment) -> pendingUsage.computeIfAbsent(tokenId, id -> new LongAdder()).add(increment));
+            log.warn("Failed to flush the token usage counters", e);
+            return;
+        }
+        responses.forEach((tokenId, response) -> {
+            Long usage = response.getNow();
+            if (usage == null || usage == 0) {
+                flushedUsage.remove(tokenId);
+            } else {
+                flushedUsage.put(tokenId, usage);
+            }
+        });
+    }
+
+    /**
+     * Reset all the counters, once the current usage of the tokens has been updated from the token stats.
+     */
+    public void reconcile() {
+        if (!applicationProperties.getTokenUsageMeter().isEnabled()) {
+            return;
+        }
+        long deleted = redissonClient.getKeys().deleteByPattern(counterPrefix + "*");
+        flushedUsage.clear();
+        log.info("Reset {} token usage counters", deleted);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+}
@@ -0,0 +1,178 @@
+package org.mskcc.cbio.oncokb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.TokenUsageRecorderOverflowPolicy;
+import org.mskcc.cbio.oncokb.config.application.TokenUsageRecorderProperties;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.domain.TokenStats;
+import org.mskcc.cbio.oncokb.domain.User;
+import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
+import org.mskcc.cbio.oncokb.service.dto.TokenUsageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Records the token usage of the proxied requests on its own bounded executor, so the user and token lookups are not
+ * on the request thread.
+ * <p>
+ * When the queue is full, the events are dropped or recorded on the request thread, depending on the overflow policy.
+ * The queued events are still recorded when the application shuts down.
+ */
+@Service
+public class TokenUsageRecorder {
+    public static final String EXECUTOR_NAME = "tokenUsageRecorder";
+
+    private final Logger log = LoggerFactory.getLogger(TokenUsageRecorder.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final UserService userService;
+
+    private final TokenService tokenService;
+
+    private final TokenStatsBufferService tokenStatsBufferService;
+
+    private final TokenUsageMeterService tokenUsageMeterService;
+
+    private final MailService mailService;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter dropped;
+
+    public TokenUsageRecorder(ApplicationProperties applicationProperties, UserService userService, TokenService tokenService,
+                              TokenStatsBufferService tokenStatsBufferService, TokenUsageMeterService tokenUsageMeterService,
+                              MailService mailService, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.userService = userService;
+        this.tokenService = tokenService;
+        this.tokenStatsBufferService = tokenStatsBufferService;
+        this.tokenUsageMeterService = tokenUsageMeterService;
+        this.mailService = mailService;
+
+        this.dropped = meterRegistry.counter("oncokb.token.usage.recorder.dropped");
+        TokenUsageRecorderProperties recorderProperties = applicationProperties.getTokenUsageRecorder();
+        RejectedExecutionHandler overflowHandler = recorderProperties.getOverflowPolicy() == TokenUsageRecorderOverflowPolicy.CALLER_RUNS
+            ? new ThreadPoolExecutor.CallerRunsPolicy()
+            : (runnable, pool) -> dropped.increment();
+        this.executor = new ThreadPoolExecutor(recorderProperties.getPoolSize(), recorderProperties.getPoolSize(), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(recorderProperties.getQueueCapacity()), threadFactory(), overflowHandler);
+        // Exports the queued, active and completed tasks
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Add the usage to the token stats and to the real time usage of the token.
+     */
+    public void record(TokenUsageEvent event) {
+        if (event.getLogin() == null || event.getToken() == null) {
+            return;
+        }
+        executor.execute(() -> recordSafely(event, this::recordTokenStats));
+    }
+
+    /**
+     * Notify the tech dev team when the usage of the public website token goes beyond the threshold.
+     */
+    public void recordPublicWebsiteUsage(TokenUsageEvent event) {
+        if (event.getLogin() == null) {
+            return;
+        }
+        executor.execute(() -> recordSafely(event, this::checkPublicWebsiteUsage));
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("The token usage recorder did not finish in time, {} events are not recorded", executor.getQueue().size());
+        }
+    }
+
+    private void recordSafely(TokenUsageEvent event, Consumer<TokenUsageEvent> recorder) {
+        try {
+            recorder.accept(event);
+        } catch (RuntimeException e) {
+            log.error("Failed to record {}", event, e);
+        }
+    }
+
+    private void recordTokenStats(TokenUsageEvent event) {
+        Optional<User> user = userService.getUserWithAuthoritiesByLogin(event.getLogin());
+        if (!user.isPresent() ||
+            user.get().getAuthorities().stream().anyMatch(authority -> authority.getName().equalsIgnoreCase(AuthoritiesConstants.ADMIN)) ||
+            applicationProperties.getTokenUsageCheckWhitelistLogins().contains(user.get().getLogin())) {
+            return;
+        }
+        List<Token> tokenList = tokenService.findValidByUser(user.get());
+        tokenList.forEach(token -> {
+            if (event.getToken().equals(token.getToken())) {
+                TokenStats tokenStats = new TokenStats();
+                tokenStats.setToken(token);
+                tokenStats.setAccessIp(event.getAccessIp());
+                tokenStats.setAccessTime(event.getAccessTime());
+                tokenStats.setUsageCount(event.getUsageCount());
+                tokenStats.setResource(event.getResource());
+                tokenStatsBufferService.add(tokenStats);
+                tokenUsageMeterService.record(token, event.getUsageCount());
+            }
+        });
+    }
+
+    private void checkPublicWebsiteUsage(TokenUsageEvent event) {
+        Optional<User> user = userService.getUserWithAuthoritiesByLogin(event.getLogin());
+        if (!user.isPresent() ||
+            user.get().getAuthorities().stream().noneMatch(authority -> authority.getName().equalsIgnoreCase(AuthoritiesConstants.PUBLIC_WEBSITE))) {
+            return;
+        }
+        int threshold = applicationProperties.getPublicWebsiteApiThreshold();
+        tokenService.findValidByUser(user.get()).forEach(token -> {
+            // Check the current public website token usage
+            // Send email if the token usage beyonds the threshold
+            // This is not guaranteed to be triggered if the request is a post and total passes the cutoff
+            // But I think the impact would be minimum
+            if (token.getCurrentUsage() > threshold && (token.getCurrentUsage() - threshold) % (threshold / 4) == 0) {
+                try {
+                    mailService.sendEmail(
+                        applicationProperties.getEmailAddresses().getTechDevAddress(),
+                        applicationProperties.getEmailAddresses().getContactAddress(),
+                        null,
+                        "Public Website Token exceeds the threshold.",
+                        "The Current usage: " + token.getCurrentUsage() + "\n" + "The threshold:" + threshold,
+                        null,
+                        false,
+                        false
+                    );
+                } catch (MessagingException e) {
+                    log.error("Failed to send the public website token usage email", e);
+                }
+            }
+        });
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "token-usage-recorder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
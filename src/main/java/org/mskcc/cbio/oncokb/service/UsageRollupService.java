@@ -0,0 +1,206 @@
+package org.mskcc.cbio.oncokb.service;
+
+import org.mskcc.cbio.oncokb.service.dto.ResourceUsage;
+import org.mskcc.cbio.oncokb.service.dto.UsageRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * Monthly usage of the resources per user, kept up to date from the token stats for the usage analysis.
+ * <p>
+ * Every roll up only aggregates the token stats accessed since the watermark of the previous one and adds them to the
+ * rollups, so the work is proportional to the new usage. The rollups are kept once the token stats are removed.
+ */
+@Service
+public class UsageRollupService {
+    private static final String USAGE_ANALYSIS = "usage-analysis";
+
+    // The token stats buffer writes the usage a few minutes after it happened, the latest minutes are left for the next run
+    private static final Duration LATE_USAGE_MARGIN = Duration.ofMinutes(10);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT_WATERMARK = "SELECT watermark FROM usage_rollup_state WHERE name = ? FOR UPDATE";
+    private static final String INSERT_WATERMARK = "INSERT INTO usage_rollup_state (name, watermark) VALUES (?, ?)";
+    private static final String UPDATE_WATERMARK = "UPDATE usage_rollup_state SET watermark = ? WHERE name = ?";
+    private static final String SELECT_CURRENT_WATERMARK = "SELECT watermark FROM usage_rollup_state WHERE name = ?";
+    private static final String SELECT_REPORTED = "SELECT 1 FROM usage_rollup_state WHERE name = ? AND reported_from = ? AND reported_watermark = ?";
+    private static final String UPDATE_REPORTED = "UPDATE usage_rollup_state SET reported_from = ?, reported_watermark = ? WHERE name = ?";
+    private static final String SELECT_NEW_USAGE = "SELECT t.user_id, s.resource, DATE_FORMAT(s.access_time, '%Y-%m') AS month, SUM(s.usage_count)" +
+        " FROM token_stats s JOIN token t ON t.id = s.token_id" +
+        " WHERE s.access_time >= ? AND s.access_time < ?" +
+        " GROUP BY t.user_id, s.resource, month";
+    private static final String UPSERT_ROLLUP = "INSERT INTO usage_rollup (user_id, resource, month, usage_count) VALUES (?, ?, ?, ?)" +
+        " ON DUPLICATE KEY UPDATE usage_count = usage_count + VALUES(usage_count)";
+    // The rollups of the deleted users are left out, as they are from the user summary and the resource detail
+    private static final String SELECT_RESOURCE_USAGE = "SELECT r.resource, r.month, SUM(r.usage_count) FROM usage_rollup r" +
+        " JOIN jhi_user u ON u.id = r.user_id" +
+        " WHERE r.month >= ?" +
+        " GROUP BY r.resource, r.month";
+    private static final String SELECT_USER_IDS = "SELECT DISTINCT user_id FROM usage_rollup WHERE month >= ?";
+    private static final String SELECT_ROLLUPS_BY_USER = "SELECT user_id, resource, month, usage_count FROM usage_rollup WHERE month >= ?" +
+        " ORDER BY user_id, month";
+    // Compared as binary, so paths only differing in case are not mixed up
+    private static final String SELECT_ROLLUPS_BY_PATH = "SELECT user_id, resource, month, usage_count FROM usage_rollup WHERE month >= ?" +
+        " ORDER BY CAST(REPLACE(SUBSTRING(resource, LOCATE(' ', resource) + 1), '%20', '') AS BINARY), month, user_id";
+
+    private static final RowMapper<UsageRollup> ROLLUP_MAPPER = (rs, rowNum) -> new UsageRollup(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4));
+
+    private final Logger log = LoggerFactory.getLogger(UsageRollupService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UsageRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The mysql driver streams the rows one by one instead of reading the whole result set into memory
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Add the usage since the previous roll up to the monthly rollups, and move the watermark forward in the same
+     * transaction. The watermark row stays locked until then, so concurrent runs do not count the usage twice.
+     *
+     * @return the number of rollups that changed
+     */
+    public int rollUp() {
+        Instant upTo = Instant.now().minus(LATE_USAGE_MARGIN).truncatedTo(ChronoUnit.MINUTES);
+        return transactionTemplate.execute(status -> {
+            Instant watermark = lockWatermark();
+            if (!watermark.isBefore(upTo)) {
+                return 0;
+            }
+            long start = System.currentTimeMillis();
+            List<UsageRollup> rollups = jdbcTemplate.query(SELECT_NEW_USAGE, ps -> {
+                ps.setTimestamp(1, Timestamp.from(watermark), utc());
+                ps.setTimestamp(2, Timestamp.from(upTo), utc());
+            }, ROLLUP_MAPPER);
+            jdbcTemplate.batchUpdate(UPSERT_ROLLUP, rollups, BATCH_SIZE, (ps, rollup) -> {
+                ps.setLong(1, rollup.getUserId());
+                ps.setString(2, rollup.getResource());
+                ps.setString(3, rollup.getMonth());
+                ps.setLong(4, rollup.getUsageCount());
+            });
+            jdbcTemplate.update(UPDATE_WATERMARK, ps -> {
+                ps.setTimestamp(1, Timestamp.from(upTo), utc());
+                ps.setString(2, USAGE_ANALYSIS);
+            });
+            log.info("Rolled up the usage from {} to {} into {} rollups in {}ms", watermark, upTo, rollups.size(), System.currentTimeMillis() - start);
+            return rollups.size();
+        });
+    }
+
+    /**
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     * @return the users with usage since the month
+     */
+    public List<Long> findUserIds(String fromMonth) {
+        return jdbcTemplate.queryForList(SELECT_USER_IDS, Long.class, fromMonth);
+    }
+
+    /**
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     * @return the usage of every resource by all the users in every month since the month
+     */
+    public List<ResourceUsage> findResourceUsage(String fromMonth) {
+        return jdbcTemplate.query(SELECT_RESOURCE_USAGE, (rs, rowNum) -> new ResourceUsage(rs.getString(1), rs.getString(2), rs.getLong(3)), fromMonth);
+    }
+
+    /**
+     * Pass the rollups since the month to the consumer one by one, ordered by user and month.
+     *
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     */
+    public void streamRollupsByUser(String fromMonth, Consumer<UsageRollup> consumer) {
+        stream(SELECT_ROLLUPS_BY_USER, fromMonth, consumer);
+    }
+
+    /**
+     * Pass the rollups since the month to the consumer one by one, ordered by path, month and user. The path of a
+     * resource is the part after its method, without the encoded spaces.
+     *
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     */
+    public void streamRollupsByPath(String fromMonth, Consumer<UsageRollup> consumer) {
+        stream(SELECT_ROLLUPS_BY_PATH, fromMonth, consumer);
+    }
+
+    /**
+     * @return the watermark of the latest roll up, none before the first one
+     */
+    public Optional<Instant> getWatermark() {
+        return jdbcTemplate.query(SELECT_CURRENT_WATERMARK, ps -> ps.setString(1, USAGE_ANALYSIS),
+            (rs, rowNum) -> rs.getTimestamp(1, utc()).toInstant()).stream().findFirst();
+    }
+
+    /**
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     * @param watermark the watermark of the rollups
+     * @return whether the usage analysis was last successfully generated from these rollups since the month
+     */
+    public boolean isReported(String fromMonth, Instant watermark) {
+        return !jdbcTemplate.query(SELECT_REPORTED, ps -> {
+            ps.setString(1, USAGE_ANALYSIS);
+            ps.setString(2, fromMonth);
+            ps.setTimestamp(3, Timestamp.from(watermark), utc());
+        }, (rs, rowNum) -> rs.getInt(1)).isEmpty();
+    }
+
+    /**
+     * Record the usage analysis as generated from the rollups up to the watermark, once all of it has been exported.
+     *
+     * @param fromMonth the first month, formatted as {@code yyyy-MM}
+     * @param watermark the watermark of the rollups read by the usage analysis
+     */
+    public void setReported(String fromMonth, Instant watermark) {
+        jdbcTemplate.update(UPDATE_REPORTED, ps -> {
+            ps.setString(1, fromMonth);
+            ps.setTimestamp(2, Timestamp.from(watermark), utc());
+            ps.setString(3, USAGE_ANALYSIS);
+        });
+    }
+
+    private void stream(String sql, String fromMonth, Consumer<UsageRollup> consumer) {
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(ROLLUP_MAPPER.mapRow(rs, 0)), fromMonth);
+    }
+
+    private Instant lockWatermark() {
+        List<Instant> watermarks = jdbcTemplate.query(SELECT_WATERMARK, ps -> ps.setString(1, USAGE_ANALYSIS),
+            (rs, rowNum) -> rs.getTimestamp(1, utc()).toInstant());
+        if (!watermarks.isEmpty()) {
+            return watermarks.get(0);
+        }
+        // First run, all the token stats there are get rolled up
+        jdbcTemplate.update(INSERT_WATERMARK, ps -> {
+            ps.setString(1, USAGE_ANALYSIS);
+            ps.setTimestamp(2, Timestamp.from(Instant.EPOCH), utc());
+        });
+        return Instant.EPOCH;
+    }
+
+    // Same as hibernate.jdbc.time_zone
+    private static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    }
+}
@@ -7,11 +7,13 @@ import org.mskcc.cbio.oncokb.config.Constants;
 import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
 import org.mskcc.cbio.oncokb.domain.*;
 import org.mskcc.cbio.oncokb.domain.enumeration.LicenseType;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
 import org.mskcc.cbio.oncokb.repository.AuthorityRepository;
 import org.mskcc.cbio.oncokb.repository.UserDetailsRepository;
 import org.mskcc.cbio.oncokb.repository.UserRepository;
 import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
 import org.mskcc.cbio.oncokb.security.SecurityUtils;
+import org.mskcc.cbio.oncokb.security.uuid.TokenNearCache;
 import org.mskcc.cbio.oncokb.security.uuid.TokenProvider;
 import org.mskcc.cbio.oncokb.service.dto.useradditionalinfo.*;
 import org.mskcc.cbio.oncokb.service.dto.UserDTO;
@@ -67,6 +69,8 @@ public class UserService {
 
     private final SlackService slackService;
 
+    private final TokenNearCache tokenNearCache;
+
     @Autowired
     private UserMapper userMapper;
 
@@ -80,7 +84,8 @@ public class UserService {
         TokenProvider tokenProvider,
         CacheNameResolver cacheNameResolver,
         SlackService slackService,
-        CacheManager cacheManager
+        CacheManager cacheManager,
+        TokenNearCache tokenNearCache
     ) {
         this.userRepository = userRepository;
         this.userDetailsRepository = userDetailsRepository;
@@ -92,6 +97,7 @@ public class UserService {
         this.cacheNameResolver = cacheNameResolver;
         this.cacheManager = cacheManager;
         this.slackService = slackService;
+        this.tokenNearCache = tokenNearCache;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -432,6 +438,11 @@ public class UserService {
         return userRepository.findOneWithAuthoritiesByEmailIgnoreCase(email);
     }
 
+    @Transactional(readOnly = true)
+    public List<UserContact> getUserContactsByIds(Collection<Long> ids) {
+        return userRepository.findAllContactsByIdIn(ids);
+    }
+
     @Transactional(readOnly = true)
     public Page<UserDTO> getAllRegisteredUsers(Pageable pageable) {
         return userRepository.findAllByActivatedIsTrueOrderByCreatedBy(pageable).map(user -> userMapper.userToUserDTO(user));
@@ -535,5 +546,6 @@ public class UserService {
         if (user.getEmail() != null) {
             Objects.requireNonNull(cacheManager.getCache(this.cacheNameResolver.getCacheName(USERS_BY_EMAIL_CACHE))).evict(user.getEmail());
         }
+        tokenNearCache.evictUser(user.getLogin());
     }
 }
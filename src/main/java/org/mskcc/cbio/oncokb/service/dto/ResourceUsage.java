@@ -0,0 +1,28 @@
+package org.mskcc.cbio.oncokb.service.dto;
+
+/**
+ * The usage of a resource by all the users in a month, the month being formatted as {@code yyyy-MM}.
+ */
+public final class ResourceUsage {
+    private final String resource;
+    private final String month;
+    private final long usageCount;
+
+    public ResourceUsage(String resource, String month, long usageCount) {
+        this.resource = resource;
+        this.month = month;
+        this.usageCount = usageCount;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public long getUsageCount() {
+        return usageCount;
+    }
+}
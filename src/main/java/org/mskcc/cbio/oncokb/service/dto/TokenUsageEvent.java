@@ -0,0 +1,60 @@
+package org.mskcc.cbio.oncokb.service.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The usage of a proxied request, captured on the request thread so it can be recorded after the response completed.
+ */
+public final class TokenUsageEvent {
+    private final String login;
+    private final UUID token;
+    private final String accessIp;
+    private final String resource;
+    private final Instant accessTime;
+    private final int usageCount;
+
+    public TokenUsageEvent(String login, UUID token, String accessIp, String resource, Instant accessTime, int usageCount) {
+        this.login = login;
+        this.token = token;
+        this.accessIp = accessIp;
+        this.resource = resource;
+        this.accessTime = accessTime;
+        this.usageCount = usageCount;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public UUID getToken() {
+        return token;
+    }
+
+    public String getAccessIp() {
+        return accessIp;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public Instant getAccessTime() {
+        return accessTime;
+    }
+
+    public int getUsageCount() {
+        return usageCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenUsageEvent{" +
+            "login='" + login + '\'' +
+            ", accessIp='" + accessIp + '\'' +
+            ", resource='" + resource + '\'' +
+            ", accessTime=" + accessTime +
+            ", usageCount=" + usageCount +
+            '}';
+    }
+}
@@ -0,0 +1,34 @@
+package org.mskcc.cbio.oncokb.service.dto;
+
+/**
+ * The usage of a resource by a user in a month, the month being formatted as {@code yyyy-MM}.
+ */
+public final class UsageRollup {
+    private final long userId;
+    private final String resource;
+    private final String month;
+    private final long usageCount;
+
+    public UsageRollup(long userId, String resource, String month, long usageCount) {
+        this.userId = userId;
+        this.resource = resource;
+        this.month = month;
+        this.usageCount = usageCount;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public long getUsageCount() {
+        return usageCount;
+    }
+}
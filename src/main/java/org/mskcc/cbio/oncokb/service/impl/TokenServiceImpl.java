@@ -1,9 +1,12 @@
 package org.mskcc.cbio.oncokb.service.impl;
 
+import org.mskcc.cbio.oncokb.config.cache.CacheEvictions;
 import org.mskcc.cbio.oncokb.config.cache.CacheNameResolver;
 import org.mskcc.cbio.oncokb.domain.Token;
 import org.mskcc.cbio.oncokb.domain.User;
+import org.mskcc.cbio.oncokb.querydomain.TokenUsageChange;
 import org.mskcc.cbio.oncokb.repository.TokenRepository;
+import org.mskcc.cbio.oncokb.security.uuid.TokenNearCache;
 import org.mskcc.cbio.oncokb.service.TokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +18,7 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -36,11 +40,14 @@ public class TokenServiceImpl implements TokenService {
 
     private final CacheNameResolver cacheNameResolver;
 
+    private final TokenNearCache tokenNearCache;
 
-    public TokenServiceImpl(TokenRepository tokenRepository, CacheManager cacheManager, CacheNameResolver cacheNameResolver) {
+
+    public TokenServiceImpl(TokenRepository tokenRepository, CacheManager cacheManager, CacheNameResolver cacheNameResolver, TokenNearCache tokenNearCache) {
         this.tokenRepository = tokenRepository;
         this.cacheManager = cacheManager;
         this.cacheNameResolver = cacheNameResolver;
+        this.tokenNearCache = tokenNearCache;
     }
 
     @Override
@@ -106,6 +113,20 @@ public class TokenServiceImpl implements TokenService {
         return tokenRepository.findAllExpiresBeforeDate(date);
     }
 
+    @Override
+    public int updateCurrentUsageFromTokenStats(Instant before) {
+        // Token stats written between the two statements may update a token that is not evicted, until its cache entries expire
+        List<TokenUsageChange> changes = tokenRepository.findTokenUsageChanges(before);
+        int updated = tokenRepository.updateCurrentUsageFromTokenStats(before);
+
+        Set<UUID> tokens = changes.stream().map(change -> UUID.fromString(change.getToken())).collect(Collectors.toSet());
+        Set<String> logins = changes.stream().map(TokenUsageChange::getLogin).collect(Collectors.toSet());
+        CacheEvictions.evictAll(Objects.requireNonNull(cacheManager.getCache(this.cacheNameResolver.getCacheName(TOKEN_BY_UUID_CACHE))), tokens);
+        CacheEvictions.evictAll(Objects.requireNonNull(cacheManager.getCache(this.cacheNameResolver.getCacheName(TOKENS_BY_USER_LOGIN_CACHE))), logins);
+        tokenNearCache.evictTokens(tokens);
+        return updated;
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Token : {}", id);
@@ -115,5 +136,6 @@ public class TokenServiceImpl implements TokenService {
     private void clearTokenCaches(Token token) {
         Objects.requireNonNull(cacheManager.getCache(this.cacheNameResolver.getCacheName(TOKEN_BY_UUID_CACHE))).evict(token.getToken());
         Objects.requireNonNull(cacheManager.getCache(this.cacheNameResolver.getCacheName(TOKENS_BY_USER_LOGIN_CACHE))).evict(token.getUser().getLogin());
+        tokenNearCache.evictToken(token.getToken());
     }
 }
@@ -0,0 +1,119 @@
+package org.mskcc.cbio.oncokb.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+
+/**
+ * Counts the elements of a top level json array while the body is passing through, without keeping the body
+ * or building any object.
+ * <p>
+ * The count falls back to 1 when the body is not a well-formed json array.
+ */
+public class JsonArrayElementCounter {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private int depth = 0;
+    private int count = 0;
+    private boolean arrayClosed = false;
+    private boolean malformed = false;
+    private boolean finished = false;
+
+    public JsonArrayElementCounter() {
+        JsonParser nonBlockingParser = null;
+        try {
+            nonBlockingParser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            malformed = true;
+        }
+        this.parser = nonBlockingParser;
+    }
+
+    /**
+     * Count the elements of a top level json array held in memory. Only the top level is walked, nested values are
+     * skipped without being built.
+     */
+    public static int count(String body) {
+        if (body == null) {
+            return 1;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return 1;
+            }
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    return 1;
+                }
+                count++;
+                parser.skipChildren();
+            }
+            // Anything after the array makes the body invalid
+            return parser.nextToken() == null ? count : 1;
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    public void feed(byte[] buffer, int offset, int length) {
+        if (malformed || finished || length <= 0) {
+            return;
+        }
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer, offset, offset + length);
+            consumeAvailableTokens();
+        } catch (IOException e) {
+            malformed = true;
+        }
+    }
+
+    public int getCount() {
+        if (!finished) {
+            finished = true;
+            if (!malformed) {
+                try {
+                    ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+                    consumeAvailableTokens();
+                    parser.close();
+                } catch (IOException e) {
+                    malformed = true;
+                }
+            }
+        }
+        return malformed || !arrayClosed ? 1 : count;
+    }
+
+    private void consumeAvailableTokens() throws IOException {
+        JsonToken token;
+        while (!malformed && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (depth == 0) {
+                // Only a single top level array is accepted
+                if (token != JsonToken.START_ARRAY || arrayClosed) {
+                    malformed = true;
+                } else {
+                    depth++;
+                }
+            } else if (depth == 1) {
+                if (token == JsonToken.END_ARRAY) {
+                    depth--;
+                    arrayClosed = true;
+                } else {
+                    count++;
+                    if (token.isStructStart()) {
+                        depth++;
+                    }
+                }
+            } else if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.mskcc.cbio.oncokb.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks whether a string starts with any of a fixed set of prefixes in O(log n).
+ * <p>
+ * The prefixes are sorted and the ones covered by a shorter prefix are dropped. The only candidate for a string is then
+ * the greatest prefix not after it, which is found with a binary search.
+ */
+public class PrefixMatcher {
+    private final String[] prefixes;
+
+    private PrefixMatcher(String[] prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * @param commaSeparatedPrefixes the prefixes separated by commas, blanks around them are ignored
+     */
+    public static PrefixMatcher fromCommaSeparated(String commaSeparatedPrefixes) {
+        if (commaSeparatedPrefixes == null) {
+            return of(new ArrayList<>());
+        }
+        return of(Arrays.asList(commaSeparatedPrefixes.split(",")));
+    }
+
+    public static PrefixMatcher of(List<String> prefixes) {
+        String[] sorted = prefixes.stream().map(String::trim).filter(prefix -> !prefix.isEmpty()).sorted().distinct().toArray(String[]::new);
+        List<String> pruned = new ArrayList<>();
+        for (String prefix : sorted) {
+            // A prefix sorts right after the shorter prefixes covering it
+            if (pruned.isEmpty() || !prefix.startsWith(pruned.get(pruned.size() - 1))) {
+                pruned.add(prefix);
+            }
+        }
+        return new PrefixMatcher(pruned.toArray(new String[0]));
+    }
+
+    public boolean matches(String value) {
+        if (value == null || prefixes.length == 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(prefixes, value);
+        if (index >= 0) {
+            return true;
+        }
+        int floor = -index - 2;
+        return floor >= 0 && value.startsWith(prefixes[floor]);
+    }
+}
@@ -0,0 +1,98 @@
+package org.mskcc.cbio.oncokb.util;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter of UUIDs. A UUID that was never added is reported as absent most of the time, a UUID that was
+ * added is always reported as present.
+ * <p>
+ * Bits are set with compare-and-set, so UUIDs can be added while other threads are checking the filter.
+ */
+public class UuidBloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions the number of UUIDs the filter is sized for
+     * @param falsePositiveRate  the expected false positive rate once the filter holds the expected insertions
+     */
+    public UuidBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(UUID uuid) {
+        long h1 = hash1(uuid);
+        long h2 = hash2(uuid);
+        for (int i = 0; i < hashCount; i++) {
+            setBit(Math.floorMod(h1 + i * h2, bitCount));
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(UUID uuid) {
+        long h1 = hash1(uuid);
+        long h2 = hash2(uuid);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the probability that a UUID never added is reported as present, given the UUIDs added so far
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.sum() / bitCount), hashCount);
+    }
+
+    public long getSizeInBytes() {
+        return bitCount / 8;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private static long hash1(UUID uuid) {
+        return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+    }
+
+    // Odd so all the hashes of a UUID are distinct
+    private static long hash2(UUID uuid) {
+        return mix(uuid.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+    }
+
+    // Finalizer of MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,66 +1,55 @@
 package org.mskcc.cbio.oncokb.web.rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.sun.xml.bind.v2.TODO;
+import org.mskcc.cbio.oncokb.config.application.ApiProxyMode;
+import org.mskcc.cbio.oncokb.config.application.ApiProxyProperties;
 import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
 import org.mskcc.cbio.oncokb.domain.Authority;
-import org.mskcc.cbio.oncokb.domain.Token;
-import org.mskcc.cbio.oncokb.domain.TokenStats;
-import org.mskcc.cbio.oncokb.domain.User;
-import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
 import org.mskcc.cbio.oncokb.security.SecurityUtils;
-import org.mskcc.cbio.oncokb.security.uuid.TokenProvider;
 import org.mskcc.cbio.oncokb.service.*;
+import org.mskcc.cbio.oncokb.service.dto.TokenUsageEvent;
+import org.mskcc.cbio.oncokb.util.JsonArrayElementCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
-import org.springframework.http.converter.ByteArrayHttpMessageConverter;
-import org.springframework.http.converter.StringHttpMessageConverter;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import springfox.documentation.annotations.ApiIgnore;
 
-import javax.mail.MessagingException;
 import javax.print.attribute.standard.Media;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.security.Security;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 @ApiIgnore("The proxy has its swagger json definition")
 @RestController
 @RequestMapping("/api")
 public class ApiProxy {
-    @Autowired
-    private ApiProxyService apiProxyService;
-
-    @Autowired
-    private TokenService tokenService;
+    private final Logger log = LoggerFactory.getLogger(ApiProxy.class);
 
     @Autowired
-    private TokenProvider tokenProvider;
+    private ApiProxyService apiProxyService;
 
     @Autowired
-    private UserService userService;
+    private ApiProxyCacheService apiProxyCacheService;
 
     @Autowired
-    private TokenStatsService tokenStatsService;
+    private TokenService tokenService;
 
     @Autowired
-    private MailService mailService;
+    private TokenUsageRecorder tokenUsageRecorder;
 
     @Autowired
     private ApplicationProperties applicationProperties;
@@ -68,120 +57,126 @@ public class ApiProxy {
     private String IP_HEADER = "X-FORWARDED-FOR";
 
     @RequestMapping("/**")
-    public String proxy(@RequestBody(required = false) String body, HttpMethod method, HttpServletRequest request)
-        throws URISyntaxException {
+    public String proxy(HttpMethod method, HttpServletRequest request, HttpServletResponse response)
+        throws URISyntaxException, IOException {
         URI uri = apiProxyService.prepareURI(request);
 
-        List<String> tokenUsageCheckList = Arrays.stream(applicationProperties.getTokenUsageCheck().split(",")).map(api -> api.trim()).filter(api -> !api.isEmpty()).collect(Collectors.toList());
-        Optional<String> needsToBeRecorded = tokenUsageCheckList.stream().filter(api -> request.getRequestURI().startsWith(api)).findFirst();
+        boolean needsToBeRecorded = applicationProperties.getTokenUsageCheckMatcher().matches(request.getRequestURI());
+
+        Optional<String> cacheKey = apiProxyCacheService.getCacheKey(method, request.getRequestURI(), request.getQueryString());
+        if (cacheKey.isPresent()) {
+            Optional<String> cachedResponse = apiProxyCacheService.get(cacheKey.get());
+            if (cachedResponse.isPresent()) {
+                if (needsToBeRecorded) {
+                    updateTokenStats(request, 1);
+                }
+                return cachedResponse.get();
+            }
+        }
+
+        // Cacheable responses are small enough to be buffered
+        if (applicationProperties.getApiProxy().getMode() == ApiProxyMode.STREAMING && !cacheKey.isPresent()) {
+            // The body is only known once it has been streamed to core, the usage is recorded afterwards
+            JsonArrayElementCounter bodyCounter = needsToBeRecorded && HttpMethod.POST.equals(method) ? new JsonArrayElementCounter() : null;
+            try {
+                apiProxyService.streamExchange(uri, method, request, response, bodyCounter);
+            } finally {
+                if (needsToBeRecorded) {
+                    updateTokenStats(request, bodyCounter == null ? 1 : bodyCounter.getCount());
+                }
+            }
+            // The response has been written already
+            return null;
+        }
 
-        if (needsToBeRecorded.isPresent()) {
+        String body = apiProxyService.readRequestBody(request);
+        if (needsToBeRecorded) {
             updateTokenStats(request, getUsageCount(body, method));
         }
 
+        if (applicationProperties.getApiProxy().getMode() == ApiProxyMode.ASYNC) {
+            startAsyncExchange(uri, method, body, request, cacheKey);
+            // The response is written once core answers
+            return null;
+        }
+
         // We want to record all traffics to /api using public_website token
-//        updatePublicWebsiteUsage(body, method);
+//        tokenUsageRecorder.recordPublicWebsiteUsage(toUsageEvent(request, getUsageCount(body, method)));
 
-        HttpHeaders httpHeaders = apiProxyService.prepareHttpHeaders(request.getContentType());
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getMessageConverters().add(0, new StringHttpMessageConverter(StandardCharsets.UTF_8));
-        return restTemplate.exchange(uri, method, new HttpEntity<>(body, httpHeaders), String.class).getBody();
+        ResponseEntity<String> coreResponse = apiProxyService.coalescedExchange(uri, method, body, request.getContentType());
+        if (cacheKey.isPresent() && coreResponse.getStatusCode() == HttpStatus.OK) {
+            apiProxyCacheService.put(cacheKey.get(), request.getRequestURI(), coreResponse.getBody());
+        }
+        return coreResponse.getBody();
+    }
+
+    private void startAsyncExchange(URI uri, HttpMethod method, String body, HttpServletRequest request, Optional<String> cacheKey) throws IOException {
+        ApiProxyProperties apiProxyProperties = applicationProperties.getApiProxy();
+        long timeout = (long) apiProxyProperties.getConnectionRequestTimeout() + apiProxyProperties.getConnectTimeout() + apiProxyProperties.getReadTimeout();
+        DeferredResult<ResponseEntity<String>> deferredResult = new DeferredResult<>(timeout);
+
+        CompletableFuture<ResponseEntity<String>> coreResponse = apiProxyService.asyncExchange(uri, method, body, request.getContentType());
+        deferredResult.onTimeout(() -> {
+            coreResponse.cancel(false);
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+        });
+        coreResponse.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                if (cacheKey.isPresent() && response.getStatusCode() == HttpStatus.OK) {
+                    apiProxyCacheService.put(cacheKey.get(), request.getRequestURI(), response.getBody());
+                }
+                deferredResult.setResult(response);
+            } else if (!(throwable instanceof CancellationException)) {
+                log.warn("Failed to proxy the request to {}: {}", uri.getPath(), throwable.getMessage());
+                deferredResult.setResult(ResponseEntity.status(HttpStatus.BAD_GATEWAY).build());
+            }
+        });
+
+        // Started by hand because the handler also serves the synchronous modes and cannot return a DeferredResult
+        try {
+            WebAsyncUtils.getAsyncManager(request).startDeferredResultProcessing(deferredResult);
+        } catch (Exception e) {
+            coreResponse.cancel(false);
+            throw new IOException("Failed to start the async processing", e);
+        }
     }
 
     @RequestMapping("/private/utils/data/sqlDump")
-    public ResponseEntity<byte[]> proxyDataReleaseDownload(@RequestBody(required = false) String body, HttpMethod method, HttpServletRequest request)
-        throws URISyntaxException {
+    public void proxyDataReleaseDownload(HttpMethod method, HttpServletRequest request, HttpServletResponse response)
+        throws URISyntaxException, IOException {
         URI uri = apiProxyService.prepareURI(request);
         updateTokenStats(request, 1);
 
-        HttpHeaders httpHeaders = apiProxyService.prepareHttpHeaders(request.getContentType());
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getMessageConverters().add(
-            new ByteArrayHttpMessageConverter());
-        return restTemplate.exchange(uri, method, new HttpEntity<>(body, httpHeaders), byte[].class);
-    }
-
-    @Async
-    public void updatePublicWebsiteUsage(String body, HttpMethod method) {
-        Optional<String> userOptional = SecurityUtils.getCurrentUserLogin();
-        if (userOptional.isPresent()) {
-            Optional<User> user = userService.getUserWithAuthoritiesByLogin(userOptional.get());
-            if (user.isPresent() &&
-                user.get().getAuthorities().stream().filter(authority -> authority.getName().equalsIgnoreCase(AuthoritiesConstants.PUBLIC_WEBSITE)).count() > 0) {
-                List<Token> tokenList = tokenProvider.getUserTokens(user.get());
-                int usageCount = getUsageCount(body, method);
-                tokenList.forEach(token -> {
-                    // Check the current public website token usage
-                    // Send email if the token usage beyonds the threshold
-                    // This is not guaranteed to be triggered if the request is a post and total passes the cutoff
-                    // But I think the impact would be minimum
-                    if(token.getCurrentUsage() > applicationProperties.getPublicWebsiteApiThreshold() && (token.getCurrentUsage() - applicationProperties.getPublicWebsiteApiThreshold()) % (applicationProperties.getPublicWebsiteApiThreshold() / 4) == 0) {
-                        try {
-                            mailService.sendEmail(
-                                applicationProperties.getEmailAddresses().getTechDevAddress(),
-                                applicationProperties.getEmailAddresses().getContactAddress(),
-                                null,
-                                "Public Website Token exceeds the threshold.",
-                                "The Current usage: " + token.getCurrentUsage() + "\n" + "The threshold:" + applicationProperties.getPublicWebsiteApiThreshold(),
-                                null,
-                                false,
-                                false
-                            );
-                        } catch (MessagingException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-            }
-        }
+        // The dump can be hundreds of MB, it is streamed to the client instead of being loaded into memory
+        apiProxyService.streamDownload(uri, method, request, response);
     }
 
     private int getUsageCount(String body, HttpMethod method) {
         int usageCount = 1;
         if (method != null && method.equals(HttpMethod.POST)) {
-            try {
-                Gson gson = new GsonBuilder().create();
-                Object[] postRequest = gson.fromJson(body, Object[].class);
-                usageCount = postRequest.length;
-            }catch (Exception e) {
-                // For any reason the request cannot be parsed to a list, we should ignore it and count it as 1
-            }
+            // For any reason the request cannot be parsed to a list, it is counted as 1
+            usageCount = JsonArrayElementCounter.count(body);
         }
         return usageCount;
     }
 
-    @Async
-    public void updateTokenStats(HttpServletRequest request, int usageCount) {
-        Optional<String> userOptional = SecurityUtils.getCurrentUserLogin();
-        if (userOptional.isPresent()) {
-            List<String> tokenUsageCheckWhitelist = Arrays.stream(applicationProperties.getTokenUsageCheckWhitelist().split(",")).map(api -> api.trim()).filter(api -> !api.isEmpty()).collect(Collectors.toList());
-
-            Optional<User> user = userService.getUserWithAuthoritiesByLogin(userOptional.get());
-            Optional<UUID> uuidOptional = SecurityUtils.getCurrentUserToken();
-            if (user.isPresent() &&
-                user.get().getAuthorities().stream().filter(authority -> authority.getName().equalsIgnoreCase(AuthoritiesConstants.ADMIN)).count() == 0 &&
-                !tokenUsageCheckWhitelist.contains(user.get().getLogin())) {
-                List<Token> tokenList = tokenProvider.getUserTokens(user.get());
-                tokenList.forEach(token -> {
-                    if (uuidOptional.isPresent() && uuidOptional.get().equals(token.getToken())) {
-                        TokenStats tokenStats = new TokenStats();
-                        tokenStats.setToken(token);
-
-                        String ipAddress = request.getHeader(IP_HEADER);
-                        if (ipAddress == null) {
-                            tokenStats.setAccessIp(request.getRemoteAddr());
-                        }else{
-                            tokenStats.setAccessIp(ipAddress);
-                        }
-                        tokenStats.setAccessTime(Instant.now());
-                        tokenStats.setUsageCount(usageCount);
-                        tokenStats.setResource(request.getMethod() + " " + request.getRequestURI());
-                        tokenStatsService.save(tokenStats);
-                    }
-                });
-            }
-        }
+    // The request cannot be read once the response has completed, everything needed is captured here
+    private TokenUsageEvent toUsageEvent(HttpServletRequest request, int usageCount) {
+        String ipAddress = request.getHeader(IP_HEADER);
+        return new TokenUsageEvent(
+            SecurityUtils.getCurrentUserLogin().orElse(null),
+            SecurityUtils.getCurrentUserToken().orElse(null),
+            ipAddress == null ? request.getRemoteAddr() : ipAddress,
+            request.getMethod() + " " + request.getRequestURI(),
+            Instant.now(),
+            usageCount
+        );
+    }
+
+    private void updateTokenStats(HttpServletRequest request, int usageCount) {
+        tokenUsageRecorder.record(toUsageEvent(request, usageCount));
     }
+
     //    @RequestMapping(value = "/private/utils/dataRelease/sqlDump",
 //        produces = {"application/zip"},
 //        method = RequestMethod.GET)
@@ -189,11 +184,9 @@ public class ApiProxy {
         throws URISyntaxException {
         URI uri = apiProxyService.prepareURI(request);
 
-        HttpHeaders httpHeaders = apiProxyService.prepareHttpHeaders(request.getContentType());
 //        httpHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        RestTemplate restTemplate = new RestTemplate();
         try {
-            ResponseEntity entity = restTemplate.exchange(uri, method, new HttpEntity<>(null, httpHeaders), byte[].class);
+            ResponseEntity entity = apiProxyService.exchange(uri, method, null, request.getContentType(), byte[].class);
             ResponseEntity responseEntity = new ResponseEntity<>((byte[]) entity.getBody(), entity.getHeaders(), entity.getStatusCode());
             return ResponseEntity.ok()
                 .contentType(new MediaType("application", "zip"))
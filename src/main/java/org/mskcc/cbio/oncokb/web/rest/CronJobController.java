@@ -2,35 +2,41 @@ package org.mskcc.cbio.oncokb.web.rest;
 
 import org.apache.commons.lang3.StringUtils;
 import org.mskcc.cbio.oncokb.config.application.ApplicationProperties;
+import org.mskcc.cbio.oncokb.config.application.UsageAnalysisProperties;
 import org.mskcc.cbio.oncokb.domain.Token;
 import org.mskcc.cbio.oncokb.domain.User;
 import org.mskcc.cbio.oncokb.domain.UserDetails;
 import org.mskcc.cbio.oncokb.domain.UserMessagePair;
-import org.mskcc.cbio.oncokb.querydomain.UserTokenUsage;
-import org.mskcc.cbio.oncokb.querydomain.UserTokenUsageWithInfo;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
 import org.mskcc.cbio.oncokb.repository.UserDetailsRepository;
 import org.mskcc.cbio.oncokb.security.AuthoritiesConstants;
 import org.mskcc.cbio.oncokb.security.uuid.TokenProvider;
 import org.mskcc.cbio.oncokb.service.*;
 import org.mskcc.cbio.oncokb.service.dto.UserDTO;
 import org.mskcc.cbio.oncokb.service.mapper.UserMapper;
+import org.mskcc.cbio.oncokb.web.rest.usageAnalysis.ResourceDetailWriter;
+import org.mskcc.cbio.oncokb.web.rest.usageAnalysis.UsageAggregator;
+import org.mskcc.cbio.oncokb.web.rest.usageAnalysis.UserSummaryWriter;
 import org.mskcc.cbio.oncokb.web.rest.vm.ExposedToken;
-import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.ResourceModel;
 import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.UsageSummary;
-import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.UserUsage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -38,7 +44,6 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
-import org.json.simple.JSONObject;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
@@ -84,6 +89,10 @@ public class CronJobController {
 
     private final ApplicationProperties applicationProperties;
 
+    private final TokenUsageMeterService tokenUsageMeterService;
+
+    private final UsageRollupService usageRollupService;
+
     final String USERS_USAGE_SUMMARY_FILE = "usage-analysis/userSummary.json";
     final String RESOURCES_USAGE_SUMMARY_FILE = "usage-analysis/resourceSummary.json";
     final String RESOURCES_USAGE_DETAIL_FILE = "usage-analysis/resourceDetail.json";
@@ -93,7 +102,8 @@ public class CronJobController {
                              TokenService tokenService, AuditEventService auditEventService,
                              TokenStatsService tokenStatsService, UserMailsService userMailsService,
                              ApplicationProperties applicationProperties, UserDetailsRepository userDetailsRepository,
-                             S3Service s3Service
+                             S3Service s3Service, TokenUsageMeterService tokenUsageMeterService,
+                             UsageRollupService usageRollupService
     ) {
 
         this.userService = userService;
@@ -106,6 +116,8 @@ public class CronJobController {
         this.applicationProperties = applicationProperties;
         this.userDetailsRepository = userDetailsRepository;
         this.s3Service = s3Service;
+        this.tokenUsageMeterService = tokenUsageMeterService;
+        this.usageRollupService = usageRollupService;
     }
 
     /**
@@ -183,108 +195,90 @@ public class CronJobController {
     @GetMapping(path = "/update-token-stats")
     public void updateTokenStats() {
         log.info("Started the cronjob to update token stats");
-        List<UserTokenUsage> tokenUsages = tokenStatsService.getUserTokenUsage(Instant.now());
-
-        // Update tokens with token usage
-        tokenUsages.stream().forEach(tokenUsage -> {
-            if (!tokenUsage.getToken().getCurrentUsage().equals(tokenUsage.getCount())) {
-                Optional<Token> tokenOptional = tokenService.findByToken(tokenUsage.getToken().getToken());
-                if (tokenOptional.isPresent()) {
-                    tokenOptional.get().setCurrentUsage(tokenUsage.getCount());
-                    tokenService.save(tokenOptional.get());
-                }
-            }
-        });
+        long start = System.currentTimeMillis();
+        int updated = tokenService.updateCurrentUsageFromTokenStats(Instant.now());
+        log.info("Updated the current usage of {} tokens in {} ms", updated, System.currentTimeMillis() - start);
 
-        // Update tokens without token usage
-        List<Long> tokenWithStats = tokenUsages.stream().map(tokenUsage -> tokenUsage.getToken().getId()).collect(Collectors.toList());
-        List<Token> tokens = tokenService.findAll().stream().filter(token -> !tokenWithStats.contains(token.getId())).collect(Collectors.toList());
-        tokens.stream().forEach(token -> {
-            if (!token.getCurrentUsage().equals(0)) {
-                token.setCurrentUsage(0);
-                tokenService.save(token);
-            }
-        });
+        // The current usage now includes the token stats, the real time counters start over from here
+        tokenUsageMeterService.reconcile();
     }
 
     /**
      * {@code GET /user-usage-analysis}: Analyze user usage
+     * <p>
+     * Only the usage since the previous run is rolled up, the analysis of the past year is then generated from the
+     * monthly rollups. Nothing is generated when the analysis was last exported in full from the same rollups, and the
+     * year still starts in the same month.
      *
      * @throws IOException
      */
     @GetMapping(path = "/user-usage-analysis")
     public void analyzeUserUsage() throws IOException {
         log.info("User usage analysis started...");
-        List<UserTokenUsageWithInfo> tokenStats = tokenStatsService.getTokenUsageAnalysis(Instant.now().minus(365, ChronoUnit.DAYS));
-        UsageSummary resourceSummary = new UsageSummary();
-        Map<Long, UserUsage> userSummary = new HashMap<>();
-        Map<String, UsageSummary> resourceDetail = new HashMap<>();
-
-        for (UserTokenUsageWithInfo state : tokenStats) {
-            ResourceModel resource = new ResourceModel(state.getResource());
-            String endpoint = resource.getEndpoint();
-            int count = state.getCount();
-            String time = state.getTime();
-
-            // Deal with resource summary
-            calculateUsageSummary(resourceSummary, endpoint, count, time);
-
-            // Deal with user usage
-            long userId = state.getToken().getUser().getId();
-            User user = state.getToken().getUser();
-            if (!userSummary.containsKey(userId)) {
-                userSummary.put(userId, new UserUsage());
-                UserUsage currentUsage = userSummary.get(userId);
-                currentUsage.setUserFirstName(user.getFirstName());
-                currentUsage.setUserLastName(user.getLastName());
-                currentUsage.setUserEmail(user.getEmail());
-                currentUsage.setSummary(new UsageSummary());
-                Optional<UserDetails> userDetails = userDetailsRepository.findOneByUser(user);
-                if (userDetails.isPresent()) {
-                    currentUsage.setJobTitle(userDetails.get().getJobTitle());
-                    currentUsage.setCompany(userDetails.get().getCompany());
-                    currentUsage.setLicenseType(userDetails.get().getLicenseType().getName());
-                }
-            }
-            UsageSummary currentUsageSummary = userSummary.get(userId).getSummary();
-            calculateUsageSummary(currentUsageSummary, endpoint, count, time);
-
-            // Deal with resource detail
-            if (!resourceDetail.containsKey(endpoint)) {
-                resourceDetail.put(endpoint, new UsageSummary());
-            }
-            String userEmail = user.getEmail();
-            calculateUsageSummary(resourceDetail.get(endpoint), userEmail, count, time);
+        usageRollupService.rollUp();
+        // Read before the rollups, so rollups changed meanwhile by a concurrent run get exported again by the next one
+        Instant watermark = usageRollupService.getWatermark().orElse(Instant.EPOCH);
+        // The past year, from the beginning of its first month
+        String fromMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(12).toString();
+        if (usageRollupService.isReported(fromMonth, watermark)) {
+            log.info("User usage analysis is up to date");
+            return;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        File resourceResult = new File("./resourceSummary.json");
-        File userResult = new File("./userSummary.json");
-        File resourceDetailResult = new File("./resourceDetail.json");
-        mapper.writeValue(resourceResult, resourceSummary);
-        mapper.writeValue(userResult, userSummary);
-        mapper.writeValue(resourceDetailResult, resourceDetail);
-
-        s3Service.saveObject("oncokb", RESOURCES_USAGE_SUMMARY_FILE, resourceResult);
-        s3Service.saveObject("oncokb", USERS_USAGE_SUMMARY_FILE, userResult);
-        s3Service.saveObject("oncokb", RESOURCES_USAGE_DETAIL_FILE, resourceDetailResult);
-        resourceResult.delete();
-        userResult.delete();
-        resourceDetailResult.delete();
+        Map<Long, UserContact> users = userService.getUserContactsByIds(usageRollupService.findUserIds(fromMonth))
+            .stream()
+            .collect(Collectors.toMap(UserContact::getId, Function.identity()));
+
+        Map<Long, UserDetails> userDetails = users.isEmpty()
+            ? Collections.emptyMap()
+            : userDetailsRepository.findAllByUserIdIn(users.keySet())
+                .stream()
+                .collect(Collectors.toMap(details -> details.getUser().getId(), Function.identity()));
+
+        // The files are written while the rollups are streamed, only the usage of one user or endpoint is in memory at a time
+        exportUsageAnalysis(USERS_USAGE_SUMMARY_FILE, generator -> {
+            UserSummaryWriter writer = new UserSummaryWriter(generator, users, userDetails);
+            usageRollupService.streamRollupsByUser(fromMonth, writer);
+            writer.finish();
+        });
+        exportUsageAnalysis(RESOURCES_USAGE_DETAIL_FILE, generator -> {
+            ResourceDetailWriter writer = new ResourceDetailWriter(generator, users);
+            usageRollupService.streamRollupsByPath(fromMonth, writer);
+            writer.finish();
+        });
+        // Summed over the users by the database, the rows only grow with the resources and months
+        UsageSummary resourceSummary = UsageAggregator.aggregate(usageRollupService.findResourceUsage(fromMonth));
+        exportUsageAnalysis(RESOURCES_USAGE_SUMMARY_FILE, generator -> generator.writeObject(resourceSummary));
+
+        // Only recorded once all the files are uploaded, a failed export is generated again by the next run
+        usageRollupService.setReported(fromMonth, watermark);
         log.info("User usage analysis completed!");
     }
 
-    private void calculateUsageSummary(UsageSummary usageSummary, String key, int count, String time) {
-        // Deal with year summary
-        usageSummary.getYear().put(key, usageSummary.getYear().getOrDefault(key, 0) + count);
-        // Deal with month summary
-        if (!usageSummary.getMonth().containsKey(time)) {
-            usageSummary.getMonth().put(time, new JSONObject());
-        }
-        if (!usageSummary.getMonth().get(time).containsKey(key)) {
-            usageSummary.getMonth().get(time).put(key, new Integer(0));
+    private void exportUsageAnalysis(String objectPath, UsageAnalysisExport export) throws IOException {
+        UsageAnalysisProperties usageAnalysisProperties = applicationProperties.getUsageAnalysis();
+        File scratchDirectory = StringUtils.isEmpty(usageAnalysisProperties.getScratchDirectory()) ? null : new File(usageAnalysisProperties.getScratchDirectory());
+        File file = File.createTempFile("usage-analysis", usageAnalysisProperties.isGzip() ? ".json.gz" : ".json", scratchDirectory);
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+            if (usageAnalysisProperties.isGzip()) {
+                outputStream = new GZIPOutputStream(outputStream);
+            }
+            try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                export.write(generator);
+            }
+            if (usageAnalysisProperties.isGzip()) {
+                s3Service.saveObject("oncokb", objectPath, file, "gzip");
+            } else {
+                s3Service.saveObject("oncokb", objectPath, file);
+            }
+        } finally {
+            file.delete();
         }
-        usageSummary.getMonth().get(time).put(key, (Integer) usageSummary.getMonth().get(time).get(key) + (Integer) count);
+    }
+
+    private interface UsageAnalysisExport {
+        void write(JsonGenerator generator) throws IOException;
     }
 
     /**
@@ -1,12 +1,14 @@
 package org.mskcc.cbio.oncokb.web.rest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
@@ -42,7 +44,10 @@ public class UsageAnalysisController {
             throws UnsupportedEncodingException, IOException, ParseException {
         Optional<S3Object> s3object = s3Service.getObject("oncokb", file);
         if (s3object.isPresent()){
-            S3ObjectInputStream inputStream = s3object.get().getObjectContent();
+            S3ObjectInputStream objectContent = s3object.get().getObjectContent();
+            InputStream inputStream = "gzip".equals(s3object.get().getObjectMetadata().getContentEncoding())
+                ? new GZIPInputStream(objectContent)
+                : objectContent;
             JSONParser jsonParser = new JSONParser();
             return (JSONObject) jsonParser.parse(new InputStreamReader(inputStream, "UTF-8"));
         }
@@ -0,0 +1,118 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
+import org.mskcc.cbio.oncokb.service.dto.UsageRollup;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.ResourceModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Writes the resource detail of the usage analysis, the usage of every endpoint by user, while the rollups are streamed
+ * ordered by path, month and user. Only the usage of the current endpoint is kept in memory.
+ */
+public class ResourceDetailWriter implements Consumer<UsageRollup> {
+    private final JsonGenerator generator;
+
+    private final Map<Long, UserContact> users;
+
+    private final Set<String> writtenEndpoints = new HashSet<>();
+
+    private String currentEndpoint;
+
+    private String currentMonth;
+
+    private UserContact currentUser;
+
+    private long currentUserUsage;
+
+    private final Map<String, Long> yearUsage = new HashMap<>();
+
+    public ResourceDetailWriter(JsonGenerator generator, Map<Long, UserContact> users) throws IOException {
+        this.generator = generator;
+        this.users = users;
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void accept(UsageRollup rollup) {
+        UserContact user = users.get(rollup.getUserId());
+        if (user == null) {
+            // The user has been deleted since
+            return;
+        }
+        String endpoint = new ResourceModel(rollup.getResource()).getEndpoint();
+        try {
+            if (!endpoint.equals(currentEndpoint)) {
+                endEndpoint();
+                if (!writtenEndpoints.add(endpoint)) {
+                    throw new IllegalStateException("The rollups are not ordered by path");
+                }
+                currentEndpoint = endpoint;
+                generator.writeObjectFieldStart(endpoint);
+                generator.writeObjectFieldStart("month");
+            }
+            if (!rollup.getMonth().equals(currentMonth)) {
+                endMonth();
+                currentMonth = rollup.getMonth();
+                generator.writeObjectFieldStart(currentMonth);
+            }
+            if (currentUser == null || !currentUser.getId().equals(user.getId())) {
+                endUser();
+                currentUser = user;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        currentUserUsage += rollup.getUsageCount();
+    }
+
+    /**
+     * Write the usage of the last endpoint and end the resource detail.
+     */
+    public void finish() throws IOException {
+        endEndpoint();
+        generator.writeEndObject();
+    }
+
+    private void endUser() throws IOException {
+        if (currentUser == null) {
+            return;
+        }
+        generator.writeNumberField(currentUser.getEmail(), currentUserUsage);
+        yearUsage.merge(currentUser.getEmail(), currentUserUsage, Long::sum);
+        currentUser = null;
+        currentUserUsage = 0;
+    }
+
+    private void endMonth() throws IOException {
+        if (currentMonth == null) {
+            return;
+        }
+        endUser();
+        generator.writeEndObject();
+        currentMonth = null;
+    }
+
+    private void endEndpoint() throws IOException {
+        if (currentEndpoint == null) {
+            return;
+        }
+        endMonth();
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("year");
+        for (Map.Entry<String, Long> entry : yearUsage.entrySet()) {
+            generator.writeNumberField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        yearUsage.clear();
+        currentEndpoint = null;
+    }
+}
@@ -0,0 +1,166 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import org.json.simple.JSONObject;
+import org.mskcc.cbio.oncokb.service.dto.ResourceUsage;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.ResourceModel;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.UsageSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Adds up the usage of the resources by endpoint and month, in parallel.
+ * <p>
+ * The rows are split across the fork/join pool. Every part counts into {@code long} arrays indexed by endpoint and month,
+ * both interned once for all the parts, and the parts are merged pairwise. The usage summary is only built from the
+ * merged counters, so no count is boxed while adding up.
+ */
+public class UsageAggregator {
+    private static final int SEQUENTIAL_THRESHOLD = 10000;
+
+    // The past year and the current month
+    private static final int EXPECTED_MONTHS = 13;
+
+    private final List<ResourceUsage> rows;
+
+    // The endpoint of a resource is parsed once, whatever the number of months and parts it is used in
+    private final ConcurrentMap<String, Integer> endpointIndexByResource = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Integer> endpointIndex = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Integer> monthIndex = new ConcurrentHashMap<>();
+
+    private final List<String> endpoints = new ArrayList<>();
+
+    private final List<String> months = new ArrayList<>();
+
+    private UsageAggregator(List<ResourceUsage> rows) {
+        this.rows = rows;
+    }
+
+    public static UsageSummary aggregate(List<ResourceUsage> rows) {
+        return aggregate(rows, ForkJoinPool.commonPool());
+    }
+
+    public static UsageSummary aggregate(List<ResourceUsage> rows, ForkJoinPool pool) {
+        UsageAggregator aggregator = new UsageAggregator(rows);
+        UsageTable table = pool.invoke(aggregator.new AggregateTask(0, rows.size()));
+        return aggregator.toUsageSummary(table);
+    }
+
+    private UsageSummary toUsageSummary(UsageTable table) {
+        UsageSummary summary = new UsageSummary();
+        for (int endpoint = 0; endpoint < table.counts.length; endpoint++) {
+            long[] endpointCounts = table.counts[endpoint];
+            if (endpointCounts == null) {
+                continue;
+            }
+            long yearCount = 0;
+            for (int month = 0; month < endpointCounts.length; month++) {
+                if (endpointCounts[month] > 0) {
+                    summary.getMonth().computeIfAbsent(months.get(month), key -> new JSONObject())
+                        .put(endpoints.get(endpoint), Math.toIntExact(endpointCounts[month]));
+                    yearCount += endpointCounts[month];
+                }
+            }
+            if (yearCount > 0) {
+                summary.getYear().put(endpoints.get(endpoint), Math.toIntExact(yearCount));
+            }
+        }
+        return summary;
+    }
+
+    private int endpointIndexOf(String resource) {
+        Integer index = endpointIndexByResource.get(resource);
+        if (index == null) {
+            index = endpointIndexByResource.computeIfAbsent(resource,
+                key -> intern(endpointIndex, endpoints, new ResourceModel(key).getEndpoint()));
+        }
+        return index;
+    }
+
+    private int monthIndexOf(String month) {
+        Integer index = monthIndex.get(month);
+        return index == null ? intern(monthIndex, months, month) : index;
+    }
+
+    private static int intern(ConcurrentMap<String, Integer> indices, List<String> values, String value) {
+        Integer index = indices.get(value);
+        if (index != null) {
+            return index;
+        }
+        synchronized (values) {
+            return indices.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private class AggregateTask extends RecursiveTask<UsageTable> {
+        private final int from;
+        private final int to;
+
+        private AggregateTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected UsageTable compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                UsageTable table = new UsageTable();
+                for (int i = from; i < to; i++) {
+                    ResourceUsage row = rows.get(i);
+                    table.add(endpointIndexOf(row.getResource()), monthIndexOf(row.getMonth()), row.getUsageCount());
+                }
+                return table;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(from, middle);
+            left.fork();
+            UsageTable right = new AggregateTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * The usage counts of a part of the rows, by endpoint index and then month index.
+     */
+    private static final class UsageTable {
+        private long[][] counts = new long[16][];
+
+        private void add(int endpoint, int month, long count) {
+            if (endpoint >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(endpoint + 1, counts.length * 2));
+            }
+            long[] endpointCounts = counts[endpoint];
+            if (endpointCounts == null) {
+                endpointCounts = counts[endpoint] = new long[Math.max(month + 1, EXPECTED_MONTHS)];
+            } else if (month >= endpointCounts.length) {
+                endpointCounts = counts[endpoint] = Arrays.copyOf(endpointCounts, month + 1);
+            }
+            endpointCounts[month] += count;
+        }
+
+        private UsageTable merge(UsageTable other) {
+            for (int endpoint = 0; endpoint < other.counts.length; endpoint++) {
+                long[] endpointCounts = other.counts[endpoint];
+                if (endpointCounts == null) {
+                    continue;
+                }
+                for (int month = 0; month < endpointCounts.length; month++) {
+                    if (endpointCounts[month] != 0) {
+                        add(endpoint, month, endpointCounts[month]);
+                    }
+                }
+            }
+            return this;
+        }
+    }
+}
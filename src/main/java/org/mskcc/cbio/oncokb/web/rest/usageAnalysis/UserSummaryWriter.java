@@ -0,0 +1,125 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.mskcc.cbio.oncokb.domain.UserDetails;
+import org.mskcc.cbio.oncokb.domain.enumeration.LicenseType;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
+import org.mskcc.cbio.oncokb.service.dto.UsageRollup;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.ResourceModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Writes the user summary of the usage analysis, the usage of every user by endpoint, while the rollups are streamed
+ * ordered by user and month. Only the usage of the current user is kept in memory.
+ */
+public class UserSummaryWriter implements Consumer<UsageRollup> {
+    private final JsonGenerator generator;
+
+    private final Map<Long, UserContact> users;
+
+    private final Map<Long, UserDetails> userDetails;
+
+    private Long currentUserId;
+
+    private String currentMonth;
+
+    private final Map<String, Long> monthUsage = new HashMap<>();
+
+    private final Map<String, Long> yearUsage = new HashMap<>();
+
+    /**
+     * @param users       the users with usage by id
+     * @param userDetails the user details of these users by user id, loaded at once beforehand
+     */
+    public UserSummaryWriter(JsonGenerator generator, Map<Long, UserContact> users, Map<Long, UserDetails> userDetails) throws IOException {
+        this.generator = generator;
+        this.users = users;
+        this.userDetails = userDetails;
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void accept(UsageRollup rollup) {
+        UserContact user = users.get(rollup.getUserId());
+        if (user == null) {
+            // The user has been deleted since
+            return;
+        }
+        try {
+            if (currentUserId == null || rollup.getUserId() != currentUserId) {
+                if (currentUserId != null && rollup.getUserId() < currentUserId) {
+                    throw new IllegalStateException("The rollups are not ordered by user");
+                }
+                endUser();
+                startUser(user);
+            }
+            if (!rollup.getMonth().equals(currentMonth)) {
+                endMonth();
+                currentMonth = rollup.getMonth();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String endpoint = new ResourceModel(rollup.getResource()).getEndpoint();
+        monthUsage.merge(endpoint, rollup.getUsageCount(), Long::sum);
+        yearUsage.merge(endpoint, rollup.getUsageCount(), Long::sum);
+    }
+
+    /**
+     * Write the usage of the last user and end the summary.
+     */
+    public void finish() throws IOException {
+        endUser();
+        generator.writeEndObject();
+    }
+
+    private void startUser(UserContact user) throws IOException {
+        currentUserId = user.getId();
+        generator.writeObjectFieldStart(String.valueOf(user.getId()));
+        generator.writeStringField("userFirstName", user.getFirstName());
+        generator.writeStringField("userLastName", user.getLastName());
+        generator.writeStringField("userEmail", user.getEmail());
+        Optional<UserDetails> details = Optional.ofNullable(userDetails.get(user.getId()));
+        generator.writeStringField("licenseType", details.map(UserDetails::getLicenseType).map(LicenseType::getName).orElse(null));
+        generator.writeStringField("jobTitle", details.map(UserDetails::getJobTitle).orElse(null));
+        generator.writeStringField("company", details.map(UserDetails::getCompany).orElse(null));
+        generator.writeObjectFieldStart("summary");
+        generator.writeObjectFieldStart("month");
+    }
+
+    private void endMonth() throws IOException {
+        if (currentMonth == null) {
+            return;
+        }
+        writeUsage(currentMonth, monthUsage);
+        monthUsage.clear();
+        currentMonth = null;
+    }
+
+    private void endUser() throws IOException {
+        if (currentUserId == null) {
+            return;
+        }
+        endMonth();
+        generator.writeEndObject();
+        writeUsage("year", yearUsage);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        yearUsage.clear();
+        currentUserId = null;
+    }
+
+    private void writeUsage(String fieldName, Map<String, Long> usage) throws IOException {
+        generator.writeObjectFieldStart(fieldName);
+        for (Map.Entry<String, Long> entry : usage.entrySet()) {
+            generator.writeNumberField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,137 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+import org.mskcc.cbio.oncokb.domain.Authority;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.mskcc.cbio.oncokb.domain.User;
+import org.redisson.codec.MarshallingCodec;
+import org.springframework.cache.support.NullValue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link TokenUserCodec}.
+ */
+public class TokenUserCodecTest {
+
+    private final MarshallingCodec marshallingCodec = new MarshallingCodec();
+
+    private final TokenUserCodec codec = new TokenUserCodec(marshallingCodec);
+
+    @Test
+    public void testTokenRoundTrip() throws IOException {
+        Token token = createToken();
+
+        Token decoded = (Token) roundTrip(token);
+
+        assertThat(decoded).isEqualToComparingOnlyGivenFields(token, "id", "token", "creation", "expiration", "usageLimit", "currentUsage", "renewable");
+        assertThat(decoded.getUser()).isEqualToComparingOnlyGivenFields(token.getUser(), "id", "login", "password", "firstName", "lastName",
+            "email", "activated", "langKey", "resetDate", "createdBy", "createdDate");
+        assertThat(decoded.getUser().getAuthorities()).extracting(Authority::getName).containsExactlyInAnyOrder("ROLE_USER", "ROLE_API");
+    }
+
+    @Test
+    public void testTokenListRoundTrip() throws IOException {
+        List<Token> tokens = new ArrayList<>(Arrays.asList(createToken(), createToken()));
+
+        @SuppressWarnings("unchecked")
+        List<Token> decoded = (List<Token>) roundTrip(tokens);
+
+        assertThat(decoded).extracting(Token::getToken).containsExactly(tokens.get(0).getToken(), tokens.get(1).getToken());
+    }
+
+    @Test
+    public void testNullValueRoundTrip() throws IOException {
+        assertThat(roundTrip(NullValue.INSTANCE)).isSameAs(NullValue.INSTANCE);
+    }
+
+    @Test
+    public void testOtherValuesUseTheDelegate() throws IOException {
+        assertThat(roundTrip("oncokb")).isEqualTo("oncokb");
+        assertThat(roundTrip(new ArrayList<>(Arrays.asList("a", "b")))).isEqualTo(Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void testDecodesValuesOfTheDelegate() throws IOException {
+        Token token = createToken();
+        ByteBuf encoded = marshallingCodec.getValueEncoder().encode(token);
+        try {
+            assertThat(((Token) codec.getValueDecoder().decode(encoded, null)).getToken()).isEqualTo(token.getToken());
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    public void testUnknownVersionIsDecodedAsNull() throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(createToken());
+        try {
+            encoded.setByte(1, TokenUserCodec.VERSION + 1);
+            assertThat(codec.getValueDecoder().decode(encoded, null)).isNull();
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    public void testPayloadIsSmallerThanTheDelegate() throws IOException {
+        Token token = createToken();
+        ByteBuf compact = codec.getValueEncoder().encode(token);
+        ByteBuf serialized = marshallingCodec.getValueEncoder().encode(token);
+        try {
+            assertThat(compact.readableBytes()).isLessThan(serialized.readableBytes() / 2);
+        } finally {
+            compact.release();
+            serialized.release();
+        }
+    }
+
+    private Object roundTrip(Object value) throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            return codec.getValueDecoder().decode(encoded, null);
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private static Token createToken() {
+        Authority user = new Authority();
+        user.setName("ROLE_USER");
+        Authority api = new Authority();
+        api.setName("ROLE_API");
+
+        User tokenUser = new User();
+        tokenUser.setId(42L);
+        tokenUser.setLogin("johndoe");
+        tokenUser.setPassword("$2a$10$" + UUID.randomUUID());
+        tokenUser.setFirstName("John");
+        tokenUser.setLastName("Doe");
+        tokenUser.setEmail("johndoe@localhost");
+        tokenUser.setActivated(true);
+        tokenUser.setLangKey("en");
+        tokenUser.setResetDate(Instant.now());
+        tokenUser.setCreatedBy("system");
+        tokenUser.setAuthorities(new HashSet<>(Arrays.asList(user, api)));
+
+        Token token = new Token();
+        token.setId(7L);
+        token.setToken(UUID.randomUUID());
+        token.setCreation(Instant.now());
+        token.setExpiration(Instant.now().plusSeconds(3600));
+        token.setUsageLimit(null);
+        token.setCurrentUsage(12);
+        token.setRenewable(true);
+        token.setUser(tokenUser);
+        return token;
+    }
+}
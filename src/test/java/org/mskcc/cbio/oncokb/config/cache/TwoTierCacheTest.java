@@ -0,0 +1,109 @@
+package org.mskcc.cbio.oncokb.config.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.cbio.oncokb.domain.Token;
+import org.redisson.codec.MarshallingCodec;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link TwoTierCache}.
+ */
+public class TwoTierCacheTest {
+
+    private ConcurrentMapCache redisCache;
+
+    private List<Object> publishedKeys;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TwoTierCache cache;
+
+    @BeforeEach
+    public void setup() {
+        redisCache = new ConcurrentMapCache("usersByLogin");
+        publishedKeys = new ArrayList<>();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new TwoTierCache(redisCache, new TokenUserCodec(new MarshallingCodec()), 100, 60, (cacheName, keys) -> publishedKeys.add(keys), meterRegistry);
+    }
+
+    @Test
+    public void testLocalTierServesRepeatedReads() {
+        redisCache.put("user", "value");
+
+        assertThat(cache.get("user").get()).isEqualTo("value");
+        // Changed behind the local tier, which still serves its copy
+        redisCache.put("user", "changed");
+        assertThat(cache.get("user").get()).isEqualTo("value");
+
+        assertThat(meterRegistry.get("oncokb.cache.requests").tags("tier", "redis", "result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("oncokb.cache.requests").tags("tier", "local", "result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLocalHitsAreCopies() {
+        Token token = new Token();
+        token.setId(1L);
+        token.setExpiration(Instant.ofEpochSecond(1000));
+        cache.put("token", token);
+        token.setExpiration(Instant.ofEpochSecond(2000));
+
+        Token cached = cache.get("token", Token.class);
+        assertThat(cached.getExpiration()).isEqualTo(Instant.ofEpochSecond(1000));
+        cached.setExpiration(Instant.ofEpochSecond(3000));
+        assertThat(cache.get("token", Token.class)).isNotSameAs(cached);
+        assertThat(cache.get("token", Token.class).getExpiration()).isEqualTo(Instant.ofEpochSecond(1000));
+    }
+
+    @Test
+    public void testNullValuesAreCached() {
+        cache.put("unknown", null);
+
+        assertThat(cache.get("unknown")).isNotNull();
+        assertThat(cache.get("unknown").get()).isNull();
+    }
+
+    @Test
+    public void testEvictIsPublished() {
+        cache.put("user", "value");
+        cache.evict("user");
+
+        assertThat(cache.get("user")).isNull();
+        assertThat(redisCache.get("user")).isNull();
+        assertThat(publishedKeys).containsExactly(Collections.singletonList("user"));
+    }
+
+    @Test
+    public void testEvictAll() {
+        cache.put("user", "value");
+        cache.put("other", "value");
+        cache.evictAll(Arrays.asList("user", "other"));
+
+        assertThat(cache.get("user")).isNull();
+        assertThat(cache.get("other")).isNull();
+        assertThat(publishedKeys).containsExactly(Arrays.asList("user", "other"));
+    }
+
+    @Test
+    public void testInvalidateLocally() {
+        cache.put("user", "value");
+        redisCache.put("user", "changed");
+
+        cache.invalidateLocally(Collections.singletonList("user"));
+        assertThat(cache.get("user").get()).isEqualTo("changed");
+
+        cache.invalidateLocally(null);
+        redisCache.evict("user");
+        assertThat(cache.get("user")).isNull();
+        assertThat(publishedKeys).isEmpty();
+    }
+}
@@ -0,0 +1,43 @@
+package org.mskcc.cbio.oncokb.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link RateLimitFilter}.
+ */
+public class RateLimitFilterTest {
+
+    @Test
+    public void testForgedEntriesDoNotChangeTheClientIp() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader(RateLimitFilter.IP_HEADER, "1.2.3.4");
+        assertThat(RateLimitFilter.resolveClientIp(request, 1)).isEqualTo("1.2.3.4");
+
+        MockHttpServletRequest forged = new MockHttpServletRequest();
+        forged.setRemoteAddr("10.0.0.1");
+        forged.addHeader(RateLimitFilter.IP_HEADER, "5.6.7.8, 1.2.3.4");
+        assertThat(RateLimitFilter.resolveClientIp(forged, 1)).isEqualTo("1.2.3.4");
+    }
+
+    @Test
+    public void testClientIpBehindSeveralProxies() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(RateLimitFilter.IP_HEADER, "5.6.7.8, 1.2.3.4, 10.0.0.2");
+        assertThat(RateLimitFilter.resolveClientIp(request, 2)).isEqualTo("1.2.3.4");
+        assertThat(RateLimitFilter.resolveClientIp(request, 5)).isEqualTo("5.6.7.8");
+    }
+
+    @Test
+    public void testRemoteAddressWithoutForwardedFor() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        assertThat(RateLimitFilter.resolveClientIp(request, 1)).isEqualTo("10.0.0.1");
+
+        request.addHeader(RateLimitFilter.IP_HEADER, "1.2.3.4");
+        assertThat(RateLimitFilter.resolveClientIp(request, 0)).isEqualTo("10.0.0.1");
+    }
+}
@@ -0,0 +1,63 @@
+package org.mskcc.cbio.oncokb.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link TokenBucket}.
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstIsAllowedAtOnce() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(now)).isZero();
+        }
+        assertThat(bucket.tryAcquire(now)).isEqualTo(SECOND / 10);
+    }
+
+    @Test
+    public void testRefillAtTheRate() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 1, now);
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now + SECOND / 20)).isEqualTo(SECOND / 20);
+        assertThat(bucket.tryAcquire(now + SECOND / 10)).isZero();
+        // Idle time does not allow more than the burst
+        assertThat(bucket.tryAcquire(now + 100 * SECOND)).isZero();
+        assertThat(bucket.tryAcquire(now + 100 * SECOND)).isPositive();
+    }
+
+    @Test
+    public void testConcurrentRequestsDoNotExceedTheBurst() throws InterruptedException {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(1, 100, now);
+        AtomicInteger allowed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.tryAcquire(now) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(allowed.get()).isEqualTo(100);
+    }
+}
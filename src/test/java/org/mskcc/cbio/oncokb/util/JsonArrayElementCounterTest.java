@@ -0,0 +1,67 @@
+package org.mskcc.cbio.oncokb.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link JsonArrayElementCounter} utility class.
+ */
+public class JsonArrayElementCounterTest {
+
+    private int countInChunks(String body, int chunkSize) {
+        JsonArrayElementCounter counter = new JsonArrayElementCounter();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            counter.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+        }
+        return counter.getCount();
+    }
+
+    @Test
+    public void testCountTopLevelElements() {
+        String body = "[{\"hugoSymbol\":\"BRAF\",\"alteration\":\"V600E\",\"tumorType\":[\"MEL\",\"NSCLC\"]},{\"hugoSymbol\":\"EGFR\",\"evidence\":{\"levels\":[1,2]}},\"text\",3,null,[]]";
+        assertThat(countInChunks(body, body.length())).isEqualTo(6);
+        // The result should not depend on how the body is split
+        assertThat(countInChunks(body, 1)).isEqualTo(6);
+        assertThat(countInChunks(body, 7)).isEqualTo(6);
+        assertThat(JsonArrayElementCounter.count(body)).isEqualTo(6);
+    }
+
+    @Test
+    public void testEmptyArray() {
+        assertThat(countInChunks("[ ]", 1)).isEqualTo(0);
+        assertThat(JsonArrayElementCounter.count("[ ]")).isEqualTo(0);
+    }
+
+    @Test
+    public void testFallbackToOne() {
+        assertThat(new JsonArrayElementCounter().getCount()).isEqualTo(1);
+        assertThat(countInChunks("{\"hugoSymbol\":\"BRAF\"}", 4)).isEqualTo(1);
+        assertThat(countInChunks("[{\"hugoSymbol\":\"BRAF\"},", 4)).isEqualTo(1);
+        assertThat(countInChunks("[1,2]]", 4)).isEqualTo(1);
+        assertThat(countInChunks("[1,2][3]", 4)).isEqualTo(1);
+        assertThat(countInChunks("not json", 4)).isEqualTo(1);
+
+        assertThat(JsonArrayElementCounter.count(null)).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("")).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("{\"hugoSymbol\":\"BRAF\"}")).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("[{\"hugoSymbol\":\"BRAF\"},")).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("[1,2]]")).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("[1,2][3]")).isEqualTo(1);
+        assertThat(JsonArrayElementCounter.count("not json")).isEqualTo(1);
+    }
+
+    @Test
+    public void testCountLargeBatch() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"gene\":{\"hugoSymbol\":\"BRAF\"},\"alteration\":\"V600E\",\"tumorType\":\"MEL\",\"id\":").append(i).append("}");
+        }
+        body.append("]");
+        assertThat(JsonArrayElementCounter.count(body.toString())).isEqualTo(5000);
+        assertThat(countInChunks(body.toString(), 8192)).isEqualTo(5000);
+    }
+}
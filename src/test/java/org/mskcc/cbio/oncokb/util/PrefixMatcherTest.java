@@ -0,0 +1,47 @@
+package org.mskcc.cbio.oncokb.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PrefixMatcher} utility class.
+ */
+public class PrefixMatcherTest {
+
+    @Test
+    public void testMatches() {
+        PrefixMatcher matcher = PrefixMatcher.fromCommaSeparated(" /api/v1/annotate , /api/v1/evidences/lookup,,/api/v1/annotate/mutations/byProteinChange ,/api/private/utils/data");
+        assertThat(matcher.matches("/api/v1/annotate")).isTrue();
+        assertThat(matcher.matches("/api/v1/annotate/mutations/byGenomicChange")).isTrue();
+        assertThat(matcher.matches("/api/v1/annotate/mutations/byProteinChange")).isTrue();
+        assertThat(matcher.matches("/api/v1/evidences/lookup")).isTrue();
+        assertThat(matcher.matches("/api/private/utils/data/sqlDump")).isTrue();
+
+        assertThat(matcher.matches("/api/v1/evidences")).isFalse();
+        assertThat(matcher.matches("/api/v1/genes")).isFalse();
+        assertThat(matcher.matches("/api/v1/an")).isFalse();
+        assertThat(matcher.matches("/")).isFalse();
+        assertThat(matcher.matches("")).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+    }
+
+    @Test
+    public void testSameAsLinearScan() {
+        String[] prefixes = {"/api/v1/annotate", "/api/v1/annotate/copyNumberAlterations", "/api/v1/evidences", "/api/v1/evidences/lookup", "/api/v1/genes/", "/api/v1/utils"};
+        String[] uris = {"/api/v1/annotate/copyNumberAlterations", "/api/v1/annotateX", "/api/v1/evidence", "/api/v1/evidences/1", "/api/v1/genes", "/api/v1/genes/673",
+            "/api/v1/utils/allCuratedGenes", "/api/v1/info", "/api/v1/levels", "/api/account", "/api/v1/a", "/api/v1/z"};
+        PrefixMatcher matcher = PrefixMatcher.of(Arrays.asList(prefixes));
+        for (String uri : uris) {
+            assertThat(matcher.matches(uri)).as(uri).isEqualTo(Arrays.stream(prefixes).anyMatch(uri::startsWith));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(PrefixMatcher.fromCommaSeparated(null).matches("/api/v1/genes")).isFalse();
+        assertThat(PrefixMatcher.fromCommaSeparated(" , ").matches("/api/v1/genes")).isFalse();
+    }
+}
@@ -0,0 +1,53 @@
+package org.mskcc.cbio.oncokb.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link UuidBloomFilter} utility class.
+ */
+public class UuidBloomFilterTest {
+
+    @Test
+    public void testAddedUuidsArePresent() {
+        UuidBloomFilter bloomFilter = new UuidBloomFilter(10000, 0.01);
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            bloomFilter.put(uuid);
+        }
+        assertThat(uuids).allMatch(bloomFilter::mightContain);
+        assertThat(bloomFilter.getInsertions()).isEqualTo(10000);
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        UuidBloomFilter bloomFilter = new UuidBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.put(UUID.randomUUID());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (bloomFilter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100000.0).isLessThan(0.02);
+        assertThat(bloomFilter.getExpectedFalsePositiveRate()).isBetween(0.005, 0.015);
+        // About 9.6 bits per uuid for 1%
+        assertThat(bloomFilter.getSizeInBytes()).isBetween(11000L, 13000L);
+    }
+
+    @Test
+    public void testEmpty() {
+        UuidBloomFilter bloomFilter = new UuidBloomFilter(0, 0.01);
+        assertThat(bloomFilter.mightContain(UUID.randomUUID())).isFalse();
+        assertThat(bloomFilter.getExpectedFalsePositiveRate()).isEqualTo(0);
+    }
+}
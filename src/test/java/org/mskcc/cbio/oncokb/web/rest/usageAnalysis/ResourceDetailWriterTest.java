@@ -0,0 +1,70 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
+import org.mskcc.cbio.oncokb.service.dto.UsageRollup;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link ResourceDetailWriter}.
+ */
+public class ResourceDetailWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testWriteUsageByEndpoint() throws Exception {
+        Map<Long, UserContact> users = users(1L, 2L);
+        StringWriter output = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            ResourceDetailWriter writer = new ResourceDetailWriter(generator, users);
+            // Ordered by path, month and user, the method is not part of the path
+            writer.accept(new UsageRollup(1L, "GET /api/v1/genes", "2021-01", 2));
+            writer.accept(new UsageRollup(1L, "POST /api/v1/genes", "2021-01", 3));
+            writer.accept(new UsageRollup(2L, "GET /api/v1/genes", "2021-01", 4));
+            writer.accept(new UsageRollup(1L, "GET /api/v1/genes", "2021-02", 1));
+            // Deleted since
+            writer.accept(new UsageRollup(3L, "GET /api/v1/info", "2021-01", 10));
+            writer.accept(new UsageRollup(2L, "GET /api/v1/variants", "2021-02", 5));
+            writer.finish();
+        }
+
+        JsonNode resourceDetail = mapper.readTree(output.toString());
+        assertThat(resourceDetail.size()).isEqualTo(2);
+        JsonNode genes = resourceDetail.get("/api/v1/genes");
+        assertThat(genes.get("month").get("2021-01").get("user1@localhost").asLong()).isEqualTo(5);
+        assertThat(genes.get("month").get("2021-01").get("user2@localhost").asLong()).isEqualTo(4);
+        assertThat(genes.get("month").get("2021-02").get("user1@localhost").asLong()).isEqualTo(1);
+        assertThat(genes.get("year").get("user1@localhost").asLong()).isEqualTo(6);
+        assertThat(genes.get("year").get("user2@localhost").asLong()).isEqualTo(4);
+        assertThat(resourceDetail.get("/api/v1/variants").get("year").get("user2@localhost").asLong()).isEqualTo(5);
+    }
+
+    @Test
+    public void testRejectUnorderedRollups() throws Exception {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(new StringWriter())) {
+            ResourceDetailWriter writer = new ResourceDetailWriter(generator, users(1L));
+            writer.accept(new UsageRollup(1L, "GET /api/v1/genes", "2021-01", 1));
+            writer.accept(new UsageRollup(1L, "GET /api/v1/variants", "2021-01", 1));
+            assertThatThrownBy(() -> writer.accept(new UsageRollup(1L, "GET /api/v1/genes", "2021-02", 1)))
+                .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private static Map<Long, UserContact> users(Long... ids) {
+        Map<Long, UserContact> users = new HashMap<>();
+        for (Long id : ids) {
+            users.put(id, new UserContact(id, null, null, "user" + id + "@localhost"));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,91 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import org.junit.jupiter.api.Test;
+import org.mskcc.cbio.oncokb.service.dto.ResourceUsage;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.ResourceModel;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.UsageSummary;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link UsageAggregator}.
+ */
+public class UsageAggregatorTest {
+
+    @Test
+    public void testAggregateByEndpoint() {
+        List<ResourceUsage> rows = new ArrayList<>();
+        rows.add(new ResourceUsage("GET /api/v1/genes", "2021-01", 2));
+        rows.add(new ResourceUsage("POST /api/v1/genes", "2021-01", 3));
+        rows.add(new ResourceUsage("GET /api/v1/genes", "2021-02", 1));
+        rows.add(new ResourceUsage("GET /api/v1/search?query=BRAF%20V600E", "2021-02", 4));
+
+        UsageSummary summary = UsageAggregator.aggregate(rows);
+
+        assertThat(summary.getYear())
+            .containsEntry("/api/v1/genes", 6)
+            .containsEntry("/api/v1/search?query=BRAFV600E", 4)
+            .hasSize(2);
+        assertThat(summary.getMonth().get("2021-01")).containsOnlyKeys("/api/v1/genes").containsEntry("/api/v1/genes", 5);
+        assertThat(summary.getMonth().get("2021-02")).containsEntry("/api/v1/genes", 1).containsEntry("/api/v1/search?query=BRAFV600E", 4);
+    }
+
+    @Test
+    public void testAggregateEmpty() {
+        UsageSummary summary = UsageAggregator.aggregate(Collections.emptyList());
+
+        assertThat(summary.getYear()).isEmpty();
+        assertThat(summary.getMonth()).isEmpty();
+    }
+
+    @Test
+    public void testParallelAggregationOfAYearMatchesSequentialSum() {
+        List<ResourceUsage> rows = syntheticYear(2000);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        UsageSummary summary;
+        try {
+            summary = UsageAggregator.aggregate(rows, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, Long> expectedYear = new HashMap<>();
+        Map<String, Map<String, Long>> expectedMonth = new HashMap<>();
+        for (ResourceUsage row : rows) {
+            String endpoint = new ResourceModel(row.getResource()).getEndpoint();
+            expectedYear.merge(endpoint, row.getUsageCount(), Long::sum);
+            expectedMonth.computeIfAbsent(row.getMonth(), month -> new HashMap<>()).merge(endpoint, row.getUsageCount(), Long::sum);
+        }
+        assertThat(summary.getYear()).hasSize(expectedYear.size());
+        expectedYear.forEach((endpoint, count) -> assertThat(summary.getYear().get(endpoint).longValue()).isEqualTo(count));
+        assertThat(summary.getMonth()).hasSize(12);
+        expectedMonth.forEach((month, counts) -> counts.forEach((endpoint, count) ->
+            assertThat(((Number) summary.getMonth().get(month).get(endpoint)).longValue()).isEqualTo(count)));
+    }
+
+    // Every resource used in every month of a year, by both methods
+    private static List<ResourceUsage> syntheticYear(int resources) {
+        Random random = new Random(42);
+        YearMonth first = YearMonth.of(2021, 1);
+        List<ResourceUsage> rows = new ArrayList<>();
+        for (int month = 0; month < 12; month++) {
+            for (int resource = 0; resource < resources; resource++) {
+                String path = "/api/v1/genes/" + resource;
+                rows.add(new ResourceUsage("GET " + path, first.plusMonths(month).toString(), 1 + random.nextInt(1000)));
+                rows.add(new ResourceUsage("POST " + path, first.plusMonths(month).toString(), 1 + random.nextInt(1000)));
+            }
+        }
+        Collections.shuffle(rows, random);
+        return rows;
+    }
+}
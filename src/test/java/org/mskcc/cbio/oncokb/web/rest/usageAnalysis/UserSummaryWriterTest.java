@@ -0,0 +1,61 @@
+package org.mskcc.cbio.oncokb.web.rest.usageAnalysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mskcc.cbio.oncokb.domain.UserDetails;
+import org.mskcc.cbio.oncokb.domain.enumeration.LicenseType;
+import org.mskcc.cbio.oncokb.querydomain.UserContact;
+import org.mskcc.cbio.oncokb.service.dto.UsageRollup;
+import org.mskcc.cbio.oncokb.web.rest.vm.usageAnalysis.UserUsage;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link UserSummaryWriter}.
+ */
+public class UserSummaryWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testWriteUsageByUser() throws Exception {
+        Map<Long, UserContact> users = new HashMap<>();
+        for (long id = 1; id <= 2; id++) {
+            users.put(id, new UserContact(id, "first" + id, null, "user" + id + "@localhost"));
+        }
+        UserDetails userDetails = new UserDetails();
+        userDetails.setCompany("company");
+        userDetails.setLicenseType(LicenseType.ACADEMIC);
+
+        StringWriter output = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            UserSummaryWriter writer = new UserSummaryWriter(generator, users, Collections.singletonMap(1L, userDetails));
+            writer.accept(new UsageRollup(1L, "GET /api/v1/genes", "2021-01", 2));
+            writer.accept(new UsageRollup(1L, "POST /api/v1/genes", "2021-01", 3));
+            writer.accept(new UsageRollup(1L, "GET /api/v1/variants", "2021-02", 1));
+            writer.accept(new UsageRollup(2L, "GET /api/v1/genes", "2021-02", 4));
+            writer.finish();
+        }
+
+        JsonNode userSummary = mapper.readTree(output.toString());
+        assertThat(userSummary.size()).isEqualTo(2);
+        UserUsage firstUsage = mapper.treeToValue(userSummary.get("1"), UserUsage.class);
+        assertThat(firstUsage.getUserFirstName()).isEqualTo("first1");
+        assertThat(firstUsage.getCompany()).isEqualTo("company");
+        assertThat(firstUsage.getLicenseType()).isEqualTo(LicenseType.ACADEMIC.getName());
+        assertThat(firstUsage.getSummary().getMonth().get("2021-01")).containsEntry("/api/v1/genes", 5);
+        assertThat(firstUsage.getSummary().getYear()).containsEntry("/api/v1/genes", 5).containsEntry("/api/v1/variants", 1);
+
+        UserUsage secondUsage = mapper.treeToValue(userSummary.get("2"), UserUsage.class);
+        assertThat(secondUsage.getUserEmail()).isEqualTo("user2@localhost");
+        assertThat(secondUsage.getCompany()).isNull();
+        assertThat(secondUsage.getSummary().getYear()).containsOnlyKeys("/api/v1/genes");
+    }
+}